@@ -91,6 +91,30 @@ $(document).ready(function() {
         });
     });
 
+    // 输入时联想单词，停止输入 150ms 后再请求
+    var suggestTimer = null;
+    $('#searchWord').on('input', function() {
+        var prefix = $(this).val();
+        clearTimeout(suggestTimer);
+        if (!prefix) {
+            $('#suggestions').empty();
+            return;
+        }
+        suggestTimer = setTimeout(function() {
+            $.ajax({
+                url: 'http://localhost:8080/api/words/suggest',
+                type: 'GET',
+                data: { prefix: prefix, k: 10 },
+                success: function(list) {
+                    var datalist = $('#suggestions').empty();
+                    $.each(list, function(i, item) {
+                        datalist.append($('<option>').attr('value', item.word).text(item.translation || ''));
+                    });
+                }
+            });
+        }, 150);
+    });
+
     // 查询单词
     $('#queryWord').click(function() {
         var word = $('#searchWord').val();
@@ -116,7 +140,22 @@ $(document).ready(function() {
                         $('#result').append(currentWordHtml);
 
                         // 辅助函数：构建单个节点的HTML（用于父节点或子节点列表）
+                        // 共享节点只完整出现一次，其余位置为 {ref: id}，先按编号收集完整节点
+                        var nodesById = {};
+                        (function collectNodes(node) {
+                            if (!node || node.ref !== undefined) return;
+                            nodesById[node.id] = node;
+                            (node.children || []).forEach(collectNodes);
+                            (node.parents || []).forEach(collectNodes);
+                        })(data);
+
                         function buildNodeHtml(node, type) {
+                            if (node.ref !== undefined) {
+                                // 引用节点只显示单词本身，不再重复展开
+                                var target = nodesById[node.ref] || {};
+                                return '<li class="tree-node ' + type + '-node"><span class="toggler">&nbsp;&nbsp;&nbsp;</span>'
+                                    + '<span class="content"><b class="word-pronounce">' + target.word + '</b>: ' + target.translation + '</span></li>';
+                            }
                             var hasChildren = (node.children && node.children.length > 0);
                             var hasParents = (node.parents && node.parents.length > 0);
                             // 对于父/子列表中的节点，我们主要关心它自身是否有下一级子节点用于展开
@@ -212,7 +251,11 @@ $(document).ready(function() {
                     console.error('Error parsing data or building tree:', e);
                 }
             },
-            error: function() {
+            error: function(xhr) {
+                if (xhr.status === 503) {
+                    $('#result').html('<span style="color:orange">词典加载中，请稍后重试</span>');
+                    return;
+                }
                 $('#result').html('<span style="color:red">查询失败</span>');
             }
         });
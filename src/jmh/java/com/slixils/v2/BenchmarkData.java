@@ -0,0 +1,136 @@
+package com.slixils.v2;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * 基准测试数据集
+ * <p>
+ * synthetic 为固定种子生成的合成单词：词根加前后缀组合而成，词根本身也是单词，
+ * 与真实词典一样存在大量包含关系（work、worker、rework）。
+ * 其他值按词典 JSON 文件路径读取前 size 个条目。
+ */
+final class BenchmarkData {
+
+    static final String SYNTHETIC = "synthetic";
+
+    private static final String[] PREFIXES = {"re", "un", "in", "dis", "pre", "over", "sub", "inter"};
+    private static final String[] SUFFIXES = {"s", "ed", "ing", "er", "ly", "ness", "tion", "able", "ment", "ful"};
+    private static final String CONSONANTS = "bcdfghjklmnprstvwz";
+    private static final String VOWELS = "aeiou";
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * 读取数据集
+     * @param dataset synthetic 或词典 JSON 文件路径
+     * @param size 单词数
+     * @return 单词列表
+     * @throws IOException 读取词典失败
+     */
+    static List<Word> load(String dataset, int size) throws IOException {
+        if (SYNTHETIC.equals(dataset)) {
+            return synthetic(size, 42);
+        }
+        try (DictionaryReader reader = new DictionaryReader(Paths.get(dataset))) {
+            List<Word> words = reader.nextBatch(size);
+            if (words.size() < size) {
+                throw new IllegalArgumentException("词典 " + dataset + " 只有 " + words.size() + " 个条目，不足 " + size);
+            }
+            return words;
+        }
+    }
+
+    /**
+     * 生成合成单词，同一种子结果相同
+     * @param size 单词数
+     * @param seed 随机种子
+     * @return 不重复的单词
+     */
+    static List<Word> synthetic(int size, long seed) {
+        Random random = new Random(seed);
+        List<String> stems = new ArrayList<>();
+        int stemCount = Math.max(16, size / 8);
+        for (int i = 0; i < stemCount; i++) {
+            stems.add(syllables(random, 1 + random.nextInt(3)));
+        }
+        Set<String> names = new LinkedHashSet<>();
+        while (names.size() < size) {
+            String stem = stems.get(random.nextInt(stems.size()));
+            StringBuilder name = new StringBuilder();
+            int shape = random.nextInt(10);
+            if (shape >= 6) {
+                name.append(PREFIXES[random.nextInt(PREFIXES.length)]);
+            }
+            name.append(stem);
+            if (shape == 9) {
+                name.append(stems.get(random.nextInt(stems.size())));
+            }
+            if (shape >= 3 && shape != 6) {
+                name.append(SUFFIXES[random.nextInt(SUFFIXES.length)]);
+            }
+            names.add(name.toString());
+        }
+        List<Word> words = new ArrayList<>(size);
+        for (String name : names) {
+            words.add(word(name));
+        }
+        return words;
+    }
+
+    /**
+     * 将单词写成词典 JSON 文件，格式与 DictionaryReader 读取的相同
+     * @param words 单词列表
+     * @param file 目标文件
+     * @throws IOException 写入失败
+     */
+    static void write(List<Word> words, Path file) throws IOException {
+        try (JsonGenerator gen = JsonSupport.MAPPER.getFactory()
+                .createGenerator(Files.newOutputStream(file), JsonEncoding.UTF8)) {
+            gen.writeStartArray();
+            for (Word word : words) {
+                gen.writeStartObject();
+                gen.writeStringField("name", word.getName());
+                gen.writeArrayFieldStart("trans");
+                gen.writeString(word.resolveTranslation());
+                gen.writeEndArray();
+                gen.writeStringField("usphone", word.getUsphone());
+                gen.writeStringField("ukphone", word.getUkphone());
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+        }
+    }
+
+    private static String syllables(Random random, int count) {
+        StringBuilder stem = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            stem.append(CONSONANTS.charAt(random.nextInt(CONSONANTS.length())));
+            stem.append(VOWELS.charAt(random.nextInt(VOWELS.length())));
+            if (random.nextBoolean()) {
+                stem.append(CONSONANTS.charAt(random.nextInt(CONSONANTS.length())));
+            }
+        }
+        return stem.toString();
+    }
+
+    private static Word word(String name) {
+        Word word = new Word();
+        word.setName(name);
+        word.setTranslation("释义 " + name);
+        word.setUsphone("/" + name + "/");
+        word.setUkphone("/" + name + "/");
+        return word;
+    }
+}
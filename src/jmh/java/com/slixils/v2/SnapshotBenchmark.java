@@ -0,0 +1,83 @@
+package com.slixils.v2;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 比较从 JSON 重新构建单词树与从快照恢复的耗时，以及写快照的耗时
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    int size;
+
+    /** synthetic 或词典 JSON 文件路径 */
+    @Param(BenchmarkData.SYNTHETIC)
+    String dataset;
+
+    private WordTree tree;
+    private Path dictionary;
+    private Path snapshot;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        List<Word> words = BenchmarkData.load(dataset, size);
+        tree = new WordTree();
+        tree.bulkBuild(words);
+        dictionary = Files.createTempFile("wordtree-benchmark", ".json");
+        BenchmarkData.write(words, dictionary);
+        snapshot = Files.createTempFile("wordtree-benchmark", ".snapshot");
+        WordTreeSnapshot.write(tree, snapshot);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(dictionary);
+        Files.deleteIfExists(snapshot);
+    }
+
+    @Benchmark
+    public WordTree rebuildFromJson() throws IOException {
+        WordTree target = new WordTree();
+        try (DictionaryReader reader = new DictionaryReader(dictionary)) {
+            List<Word> batch;
+            while (!(batch = reader.nextBatch(8192)).isEmpty()) {
+                target.bulkBuild(batch);
+            }
+        }
+        return target;
+    }
+
+    @Benchmark
+    public void writeSnapshot() throws IOException {
+        WordTreeSnapshot.write(tree, snapshot);
+    }
+
+    @Benchmark
+    public WordTree readSnapshot() throws IOException {
+        return WordTreeSnapshot.read(snapshot);
+    }
+}
@@ -0,0 +1,109 @@
+package com.slixils.v2;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 整体构建和整体输出的耗时：逐个插入、批量构建、整图 JSON，以及 WordService 从词典文件完整加载。
+ * 每次调用都从空树开始，用单次计时模式
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WordTreeBuildBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    int size;
+
+    /** synthetic 或词典 JSON 文件路径 */
+    @Param(BenchmarkData.SYNTHETIC)
+    String dataset;
+
+    private List<Word> words;
+    private WordTree tree;
+    private Path dictionary;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        words = BenchmarkData.load(dataset, size);
+        tree = new WordTree();
+        tree.bulkBuild(words);
+        tree.renumber();
+        // 只取前 size 个条目，真实词典也另写一份
+        dictionary = Files.createTempFile("wordtree-benchmark", ".json");
+        BenchmarkData.write(words, dictionary);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(dictionary);
+    }
+
+    @Benchmark
+    public WordTree insert() {
+        WordTree target = new WordTree();
+        for (Word word : words) {
+            target.insert(word.getName(), word.resolveTranslation(), word.getUsphone(), word.getUkphone());
+        }
+        return target;
+    }
+
+    @Benchmark
+    public WordTree bulkBuild() {
+        WordTree target = new WordTree();
+        target.bulkBuild(words);
+        return target;
+    }
+
+    @Benchmark
+    public String toPrettyJson() {
+        return tree.toPrettyJson();
+    }
+
+    /**
+     * 与启动时相同的加载流程：同步加载前约 1/4，其余异步加载后切换，计时到全部单词可查为止
+     */
+    @Benchmark
+    public WordService extractAndInsert() throws InterruptedException {
+        WordService service = new WordService();
+        ReflectionTestUtils.setField(service, "backend", "tree");
+        ReflectionTestUtils.setField(service, "dictionaryPath", dictionary.toString());
+        ReflectionTestUtils.setField(service, "imagePath", "");
+        ReflectionTestUtils.setField(service, "snapshotPath", "");
+        ReflectionTestUtils.setField(service, "frequencyPath", "");
+        try {
+            service.initialize();
+            LoadProgress progress = service.getLoadProgress();
+            while (!progress.isReady()) {
+                if (progress.getState() == LoadProgress.State.FAILED) {
+                    throw new IllegalStateException("加载失败: " + progress.getError());
+                }
+                Thread.sleep(1);
+            }
+        } finally {
+            service.shutdown();
+        }
+        return service;
+    }
+}
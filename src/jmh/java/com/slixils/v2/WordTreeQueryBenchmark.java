@@ -0,0 +1,85 @@
+package com.slixils.v2;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在建好的单词树上查询和序列化单个单词的耗时。
+ * 每次调用按固定的随机顺序轮流查询数据集中的单词，短单词（后代多）和长单词都会覆盖到
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WordTreeQueryBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    int size;
+
+    /** synthetic 或词典 JSON 文件路径 */
+    @Param(BenchmarkData.SYNTHETIC)
+    String dataset;
+
+    private WordTree tree;
+    private String[] probes;
+    private TrieNode[] nodes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        List<Word> words = BenchmarkData.load(dataset, size);
+        tree = new WordTree();
+        tree.bulkBuild(words);
+        tree.renumber();
+        List<String> names = new ArrayList<>(words.size());
+        for (Word word : words) {
+            names.add(word.getName());
+        }
+        Collections.shuffle(names, new Random(7));
+        probes = names.toArray(new String[0]);
+        nodes = new TrieNode[probes.length];
+        for (int i = 0; i < probes.length; i++) {
+            nodes[i] = tree.findNode(probes[i]);
+        }
+    }
+
+    private int nextIndex() {
+        int i = next;
+        next = i + 1 == probes.length ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public TrieNode findNode() {
+        return tree.findNode(probes[nextIndex()]);
+    }
+
+    @Benchmark
+    public TrieNode findNodev1() {
+        return tree.findNodev1(probes[nextIndex()], tree.getRoot(), new ArrayList<>());
+    }
+
+    @Benchmark
+    public String toJsonString() {
+        return nodes[nextIndex()].toJsonString(true, true);
+    }
+}
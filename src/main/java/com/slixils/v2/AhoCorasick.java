@@ -0,0 +1,197 @@
+package com.slixils.v2;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Aho-Corasick 多模式匹配自动机：一次线性扫描找出文本中出现的所有词典单词
+ * <p>
+ * 自动机由按字母顺序排列的单词一次构建，构建后不可修改，可以被多个线程同时使用。
+ * 状态按广度优先编号，同一状态的子状态编号连续，转移时在子状态的字符上二分查找；
+ * 失败指针按编号顺序计算即可保证父状态和更浅的状态已经算好。
+ * 词典变化后需要重新构建。
+ */
+public class AhoCorasick {
+
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+
+    /** 进入该状态的字符 */
+    private final char[] label;
+    /** 状态 s 的子状态为 firstChild[s] .. firstChild[s + 1] - 1 */
+    private final int[] firstChild;
+    private final int[] fail;
+    /** 在该状态结束的单词下标，没有则为 NONE */
+    private final int[] output;
+    /** 沿失败指针能到达的下一个有输出的状态，没有则为 NONE */
+    private final int[] outputLink;
+    private final int[] wordLength;
+    private final IntFunction<TrieNode> resolve;
+
+    /**
+     * 构建自动机
+     * @param words 按字母顺序排列的单词，不能重复
+     * @param resolve 根据单词下标取得单词节点
+     */
+    public AhoCorasick(List<String> words, IntFunction<TrieNode> resolve) {
+        this.resolve = resolve;
+        int n = words.size();
+        wordLength = new int[n];
+        int capacity = 1;
+        for (int i = 0; i < n; i++) {
+            wordLength[i] = words.get(i).length();
+            capacity += wordLength[i];
+        }
+        char[] labels = new char[capacity];
+        int[] children = new int[capacity + 1];
+        int[] outputs = new int[capacity];
+        int[] parents = new int[capacity];
+        // 每个状态对应有序单词表中的一段 [from, to)，这些单词的前 depth 个字符相同
+        int[] from = new int[capacity];
+        int[] to = new int[capacity];
+        int[] depth = new int[capacity];
+        from[ROOT] = 0;
+        to[ROOT] = n;
+        int count = 1;
+        for (int s = 0; s < count; s++) {
+            children[s] = count;
+            int i = from[s];
+            int d = depth[s];
+            outputs[s] = NONE;
+            // 长度恰好为 depth 的单词排在这一段最前面；忽略空字符串
+            if (i < to[s] && words.get(i).length() == d) {
+                if (d > 0) {
+                    outputs[s] = i;
+                }
+                i++;
+            }
+            while (i < to[s]) {
+                char c = words.get(i).charAt(d);
+                int j = i + 1;
+                while (j < to[s] && words.get(j).charAt(d) == c) {
+                    j++;
+                }
+                labels[count] = c;
+                parents[count] = s;
+                from[count] = i;
+                to[count] = j;
+                depth[count] = d + 1;
+                count++;
+                i = j;
+            }
+        }
+        children[count] = count;
+
+        label = Arrays.copyOf(labels, count);
+        firstChild = Arrays.copyOf(children, count + 1);
+        output = Arrays.copyOf(outputs, count);
+        fail = new int[count];
+        outputLink = new int[count];
+        fail[ROOT] = ROOT;
+        outputLink[ROOT] = NONE;
+        for (int s = 1; s < count; s++) {
+            int parent = parents[s];
+            int f = NONE;
+            if (parent != ROOT) {
+                int state = fail[parent];
+                while ((f = child(state, label[s])) == NONE && state != ROOT) {
+                    state = fail[state];
+                }
+            }
+            fail[s] = f == NONE ? ROOT : f;
+            outputLink[s] = output[fail[s]] != NONE ? fail[s] : outputLink[fail[s]];
+        }
+    }
+
+    /**
+     * 扫描文本，返回所有出现的单词（同一单词出现多次时每次都返回）
+     * @param text 文本
+     * @return 按结束位置排列的匹配结果，结束位置相同时长的在前
+     */
+    public List<Match> scan(String text) {
+        List<Match> matches = new ArrayList<>();
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int next;
+            while ((next = child(state, c)) == NONE && state != ROOT) {
+                state = fail[state];
+            }
+            state = next == NONE ? ROOT : next;
+            for (int s = output[state] != NONE ? state : outputLink[state]; s != NONE; s = outputLink[s]) {
+                int word = output[s];
+                matches.add(new Match(i + 1 - wordLength[word], i + 1, resolve.apply(word)));
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * 状态数（含根状态）
+     * @return 状态数
+     */
+    public int stateCount() {
+        return label.length;
+    }
+
+    private int child(int state, char c) {
+        int low = firstChild[state];
+        int high = firstChild[state + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char m = label[mid];
+            if (m < c) {
+                low = mid + 1;
+            } else if (m > c) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * 一次匹配：单词出现在文本的 [start, end) 位置。序列化为 JSON 时只输出单词本身的信息，不展开父子节点
+     */
+    public static class Match {
+        private final int start;
+        private final int end;
+        private final TrieNode node;
+
+        public Match(int start, int end, TrieNode node) {
+            this.start = start;
+            this.end = end;
+            this.node = node;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        @JsonIgnore
+        public TrieNode getNode() {
+            return node;
+        }
+
+        public int getId() {
+            return node.id;
+        }
+
+        public String getWord() {
+            return node.word;
+        }
+
+        public String getTranslation() {
+            return node.translation;
+        }
+    }
+}
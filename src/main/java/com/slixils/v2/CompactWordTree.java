@@ -0,0 +1,464 @@
+package com.slixils.v2;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * 紧凑存储的只读单词图
+ * <p>
+ * 节点用 int 编号表示（根节点为 0，单词按字母顺序编号为 1..n），
+ * 所有字符串存放在同一个 char 数组中，父子关系以 CSR 形式存放（偏移数组 + 目标数组）。
+ * 由于编号与字母顺序一致，每个节点的邻接编号天然有序。
+ * 数组以 CharBuffer / IntBuffer 形式持有，既可以是堆内数组，也可以是 DictionaryImage 映射的文件。
+ * 查询时按需生成 TrieNode 视图，视图的 children / parents 直接读取 CSR 数组，不可修改。
+ */
+public class CompactWordTree implements WordGraph {
+
+    /** 每个节点保存的字符串个数：单词、翻译、美式发音、英式发音 */
+    private static final int FIELDS = 4;
+    private static final int WORD = 0;
+    private static final int TRANSLATION = 1;
+    private static final int USHONE = 2;
+    private static final int UKPHONE = 3;
+    /** 字符串偏移的最高位表示该字符串为 null */
+    private static final int NULL_FLAG = 0x80000000;
+
+    private final int size;
+    private final boolean transitiveReduction;
+    /** 字符串池 */
+    private final CharBuffer chars;
+    /** 第 id * FIELDS + field 个字符串在字符串池中的起始位置，末尾多一项作为结束位置 */
+    private final IntBuffer strings;
+    private final IntBuffer childOffsets;
+    private final IntBuffer childTargets;
+    private final IntBuffer parentOffsets;
+    private final IntBuffer parentTargets;
+    /** 多模式匹配自动机，第一次使用时构建 */
+    private AhoCorasick scanner;
+    /** 最大子节点数，第一次使用时计算，未计算时为 -1 */
+    private volatile int maxFanOut = -1;
+
+    CompactWordTree(int size, boolean transitiveReduction, CharBuffer chars, IntBuffer strings,
+                    IntBuffer childOffsets, IntBuffer childTargets, IntBuffer parentOffsets, IntBuffer parentTargets) {
+        this.size = size;
+        this.transitiveReduction = transitiveReduction;
+        this.chars = chars;
+        this.strings = strings;
+        this.childOffsets = childOffsets;
+        this.childTargets = childTargets;
+        this.parentOffsets = parentOffsets;
+        this.parentTargets = parentTargets;
+    }
+
+    /**
+     * 将 WordTree 压缩为紧凑存储
+     * @param tree 单词树
+     * @return 紧凑单词图
+     */
+    public static CompactWordTree of(WordTree tree) {
+        List<TrieNode> all = new ArrayList<>(tree.size() + 1);
+        all.add(tree.getRoot());
+        all.addAll(tree.nodes());
+        all.subList(1, all.size()).sort(TrieNode.BY_WORD);
+        int count = all.size();
+        // 原编号 -> 新编号
+        int[] remap = new int[tree.idBound()];
+        for (int i = 0; i < count; i++) {
+            remap[all.get(i).id] = i;
+        }
+
+        int total = 0;
+        for (TrieNode node : all) {
+            for (int f = 0; f < FIELDS; f++) {
+                String value = field(node, f);
+                total += value == null ? 0 : value.length();
+            }
+        }
+        char[] chars = new char[total];
+        int[] strings = new int[count * FIELDS + 1];
+        int pos = 0;
+        for (int i = 0; i < count; i++) {
+            for (int f = 0; f < FIELDS; f++) {
+                String value = field(all.get(i), f);
+                if (value == null) {
+                    strings[i * FIELDS + f] = pos | NULL_FLAG;
+                } else {
+                    strings[i * FIELDS + f] = pos;
+                    value.getChars(0, value.length(), chars, pos);
+                    pos += value.length();
+                }
+            }
+        }
+        strings[count * FIELDS] = pos;
+
+        int[] childOffsets = new int[count + 1];
+        int[] parentOffsets = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            childOffsets[i + 1] = childOffsets[i] + all.get(i).children.size();
+            parentOffsets[i + 1] = parentOffsets[i] + all.get(i).parents.size();
+        }
+        int[] childTargets = new int[childOffsets[count]];
+        int[] parentTargets = new int[parentOffsets[count]];
+        for (int i = 0; i < count; i++) {
+            int c = childOffsets[i];
+            for (TrieNode child : all.get(i).children) {
+                childTargets[c++] = remap[child.id];
+            }
+            int p = parentOffsets[i];
+            for (TrieNode parent : all.get(i).parents) {
+                parentTargets[p++] = remap[parent.id];
+            }
+        }
+        return new CompactWordTree(count - 1, tree.isTransitiveReduction(), CharBuffer.wrap(chars), IntBuffer.wrap(strings),
+                IntBuffer.wrap(childOffsets), IntBuffer.wrap(childTargets),
+                IntBuffer.wrap(parentOffsets), IntBuffer.wrap(parentTargets));
+    }
+
+    private static String field(TrieNode node, int field) {
+        switch (field) {
+            case WORD:
+                return node.word;
+            case TRANSLATION:
+                return node.translation;
+            case USHONE:
+                return node.ushone;
+            default:
+                return node.ukphone;
+        }
+    }
+
+    @Override
+    public TrieNode getRoot() {
+        return view(0);
+    }
+
+    /**
+     * 根据单词查找节点，在按字母顺序编号的节点上二分查找
+     * @param word 要查找的单词
+     * @return 节点视图，找不到时返回 null
+     */
+    @Override
+    public TrieNode findNode(String word) {
+        int id = indexOf(word);
+        return id > 0 ? view(id) : null;
+    }
+
+    /**
+     * 查找单词的编号
+     * @param word 单词
+     * @return 编号，找不到时返回 -1
+     */
+    public int indexOf(String word) {
+        if (word == null) {
+            return -1;
+        }
+        int low = 1;
+        int high = size;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int c = compareWord(mid, word);
+            if (c < 0) {
+                low = mid + 1;
+            } else if (c > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 获取父子边总数
+     * @return 边数
+     */
+    @Override
+    public int edgeCount() {
+        return childTargets.limit();
+    }
+
+    @Override
+    public int maxFanOut() {
+        int max = maxFanOut;
+        if (max < 0) {
+            max = 0;
+            for (int id = 1; id <= size; id++) {
+                max = Math.max(max, childOffsets.get(id + 1) - childOffsets.get(id));
+            }
+            maxFanOut = max;
+        }
+        return max;
+    }
+
+    /**
+     * 是否为传递规约模式
+     * @return 只保存直接包含关系时返回 true
+     */
+    public boolean isTransitiveReduction() {
+        return transitiveReduction;
+    }
+
+    /**
+     * 节点的单词、翻译、美式发音和英式发音，供快照按编号顺序写出
+     * @param id 节点编号
+     * @return 四个字段，缺少的字段为 null
+     */
+    String[] fields(int id) {
+        String[] values = new String[FIELDS];
+        for (int f = 0; f < FIELDS; f++) {
+            values[f] = string(id, f);
+        }
+        return values;
+    }
+
+    CharBuffer chars() {
+        return chars.duplicate();
+    }
+
+    IntBuffer strings() {
+        return strings.duplicate();
+    }
+
+    IntBuffer childOffsets() {
+        return childOffsets.duplicate();
+    }
+
+    IntBuffer childTargets() {
+        return childTargets.duplicate();
+    }
+
+    IntBuffer parentOffsets() {
+        return parentOffsets.duplicate();
+    }
+
+    IntBuffer parentTargets() {
+        return parentTargets.duplicate();
+    }
+
+    @Override
+    public List<TrieNode> ancestors(TrieNode node) {
+        return transitiveReduction ? closure(node.id, parentOffsets, parentTargets) : new ArrayList<>(node.parents);
+    }
+
+    @Override
+    public List<TrieNode> descendants(TrieNode node) {
+        return transitiveReduction ? closure(node.id, childOffsets, childTargets) : new ArrayList<>(node.children);
+    }
+
+    /**
+     * 前缀补全：以 prefix 开头的单词编号连续，两次二分定位这一段后扫描，
+     * 扫描时只比较字符串偏移得到的长度，保留最短的 k 个
+     */
+    @Override
+    public List<TrieNode> suggest(String prefix, int k) {
+        int limit = Math.min(k, SubstringIndex.SUGGEST_LIMIT);
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        int from = lowerBound(prefix, false);
+        int to = lowerBound(prefix, true);
+        // best 按 (长度, 编号) 升序，编号有序即字母有序
+        int[] best = new int[limit];
+        int count = 0;
+        for (int id = from; id < to; id++) {
+            int length = length(id);
+            if (count == limit && length >= length(best[count - 1])) {
+                continue;
+            }
+            int i = count == limit ? count - 1 : count++;
+            while (i > 0 && length(best[i - 1]) > length) {
+                best[i] = best[i - 1];
+                i--;
+            }
+            best[i] = id;
+        }
+        List<TrieNode> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(view(best[i]));
+        }
+        return result;
+    }
+
+    /**
+     * 获取多模式匹配自动机，第一次调用时构建。单词下标 i 对应编号 i + 1
+     * @return 自动机
+     */
+    @Override
+    public synchronized AhoCorasick scanner() {
+        if (scanner == null) {
+            // 构建时会反复读取单词，先取出全部字符串，构建完即释放
+            List<String> words = new ArrayList<>(size);
+            for (int id = 1; id <= size; id++) {
+                words.add(string(id, WORD));
+            }
+            scanner = new AhoCorasick(words, index -> view(index + 1));
+        }
+        return scanner;
+    }
+
+    @Override
+    public void writeJson(JsonGenerator gen) throws IOException {
+        WordTree.writeJson(gen, getRoot(), new BitSet(size + 1));
+    }
+
+    /**
+     * 广度优先展开，编号有序即字母有序
+     * @param id 起始节点编号
+     * @param offsets 偏移数组
+     * @param targets 目标数组
+     * @return 除起始节点外所有可达节点
+     */
+    private List<TrieNode> closure(int id, IntBuffer offsets, IntBuffer targets) {
+        BitSet visited = new BitSet(size + 1);
+        int[] queue = new int[16];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = id;
+        visited.set(id);
+        while (head < tail) {
+            int current = queue[head++];
+            for (int i = offsets.get(current); i < offsets.get(current + 1); i++) {
+                int next = targets.get(i);
+                if (!visited.get(next)) {
+                    visited.set(next);
+                    if (tail == queue.length) {
+                        queue = Arrays.copyOf(queue, tail * 2);
+                    }
+                    queue[tail++] = next;
+                }
+            }
+        }
+        visited.clear(id);
+        List<TrieNode> result = new ArrayList<>(tail - 1);
+        for (int next = visited.nextSetBit(0); next >= 0; next = visited.nextSetBit(next + 1)) {
+            result.add(view(next));
+        }
+        return result;
+    }
+
+    /**
+     * 生成节点视图
+     * @param id 节点编号
+     * @return 节点视图
+     */
+    private TrieNode view(int id) {
+        TrieNode node = new TrieNode(string(id, WORD), string(id, TRANSLATION), string(id, USHONE), string(id, UKPHONE));
+        node.id = id;
+        node.children = new Adjacency(childOffsets, childTargets, id);
+        node.parents = new Adjacency(parentOffsets, parentTargets, id);
+        return node;
+    }
+
+    private String string(int id, int field) {
+        int k = id * FIELDS + field;
+        int start = strings.get(k);
+        if ((start & NULL_FLAG) != 0) {
+            return null;
+        }
+        int end = strings.get(k + 1) & ~NULL_FLAG;
+        char[] value = new char[end - start];
+        for (int i = 0; i < value.length; i++) {
+            value[i] = chars.get(start + i);
+        }
+        return new String(value);
+    }
+
+    /**
+     * 不生成字符串，直接比较编号为 id 的单词与 word
+     */
+    private int compareWord(int id, String word) {
+        int k = id * FIELDS + WORD;
+        int start = strings.get(k) & ~NULL_FLAG;
+        int end = strings.get(k + 1) & ~NULL_FLAG;
+        int length = Math.min(end - start, word.length());
+        for (int i = 0; i < length; i++) {
+            char c1 = chars.get(start + i);
+            char c2 = word.charAt(i);
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+        return (end - start) - word.length();
+    }
+
+    private int length(int id) {
+        int k = id * FIELDS + WORD;
+        return (strings.get(k + 1) & ~NULL_FLAG) - (strings.get(k) & ~NULL_FLAG);
+    }
+
+    /**
+     * 二分查找第一个不小于 prefix 的编号；after 为 true 时查找第一个大于所有以 prefix 开头的单词的编号
+     */
+    private int lowerBound(String prefix, boolean after) {
+        int low = 1;
+        int high = size + 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int c = after ? comparePrefix(mid, prefix) : compareWord(mid, prefix);
+            if (c < 0 || (after && c == 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 比较编号为 id 的单词的前 prefix.length() 个字符与 prefix，单词以 prefix 开头时返回 0
+     */
+    private int comparePrefix(int id, String prefix) {
+        int start = strings.get(id * FIELDS + WORD) & ~NULL_FLAG;
+        int length = length(id);
+        for (int i = 0; i < Math.min(length, prefix.length()); i++) {
+            char c1 = chars.get(start + i);
+            char c2 = prefix.charAt(i);
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+        return length >= prefix.length() ? 0 : -1;
+    }
+
+    /**
+     * CSR 数组上的只读邻接列表
+     */
+    private class Adjacency extends AbstractList<TrieNode> implements RandomAccess {
+        private final IntBuffer targets;
+        private final int from;
+        private final int to;
+
+        Adjacency(IntBuffer offsets, IntBuffer targets, int id) {
+            this.targets = targets;
+            this.from = offsets.get(id);
+            this.to = offsets.get(id + 1);
+        }
+
+        @Override
+        public TrieNode get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (to - from));
+            }
+            return view(targets.get(from + index));
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.slixils.v2;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * 词典镜像文件：CompactWordTree 的二进制形式，启动时通过 FileChannel.map 直接映射，数据不占用 GC 堆
+ * <p>
+ * 文件布局（小端序）：
+ * <pre>
+ * 头部 64 字节：魔数、版本、标志位、单词数、源文件长度、源文件修改时间、各段长度、正文校验和
+ * 正文：字符串池(char) | 字符串偏移(int) | 子节点偏移(int) | 子节点目标(int) | 父节点偏移(int) | 父节点目标(int)
+ * </pre>
+ * 版本号、校验和、源文件长度与修改时间、传递规约设置任一不匹配都视为过期，需要重新生成。
+ */
+@Slf4j
+public final class DictionaryImage {
+
+    private static final int MAGIC = 0x5754494D; // "WTIM"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int FLAG_TRANSITIVE_REDUCTION = 1;
+
+    private DictionaryImage() {
+    }
+
+    /**
+     * 将紧凑单词图写入镜像文件，先写临时文件再替换，避免留下半个文件
+     * @param tree 紧凑单词图
+     * @param file 镜像文件路径
+     * @param source 生成该镜像的词典源文件，用于判断镜像是否过期
+     * @throws IOException 写入失败
+     */
+    public static void write(CompactWordTree tree, Path file, Path source) throws IOException {
+        CharBuffer chars = tree.chars();
+        IntBuffer strings = tree.strings();
+        IntBuffer childOffsets = tree.childOffsets();
+        IntBuffer childTargets = tree.childTargets();
+        IntBuffer parentOffsets = tree.parentOffsets();
+        IntBuffer parentTargets = tree.parentTargets();
+
+        int charBytes = align(chars.remaining() * 2);
+        long bodySize = (long) charBytes + 4L * (strings.remaining() + childOffsets.remaining()
+                + childTargets.remaining() + parentOffsets.remaining() + parentTargets.remaining());
+        ByteBuffer body = ByteBuffer.allocate(Math.toIntExact(bodySize)).order(ByteOrder.LITTLE_ENDIAN);
+        body.asCharBuffer().put(chars);
+        ((Buffer) body).position(charBytes);
+        for (IntBuffer section : new IntBuffer[]{strings, childOffsets, childTargets, parentOffsets, parentTargets}) {
+            int length = section.remaining();
+            body.asIntBuffer().put(section);
+            ((Buffer) body).position(body.position() + length * 4);
+        }
+        ((Buffer) body).flip();
+
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(tree.isTransitiveReduction() ? FLAG_TRANSITIVE_REDUCTION : 0)
+                .putInt(tree.size())
+                .putLong(Files.size(source))
+                .putLong(Files.getLastModifiedTime(source).toMillis())
+                .putInt(tree.chars().remaining())
+                .putInt(tree.childTargets().remaining())
+                .putInt(tree.parentTargets().remaining())
+                .putLong(crc.getValue());
+        ((Buffer) header).position(HEADER_SIZE);
+        ((Buffer) header).flip();
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (body.hasRemaining()) {
+                channel.write(body);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("词典镜像已写入 {}：{} 个单词，{} 字节", file, tree.size(), HEADER_SIZE + bodySize);
+    }
+
+    /**
+     * 映射并校验镜像文件
+     * @param file 镜像文件路径
+     * @param source 词典源文件
+     * @param transitiveReduction 当前是否使用传递规约模式
+     * @return 映射得到的紧凑单词图；文件不存在、损坏或已过期时返回 null
+     * @throws IOException 读取失败
+     */
+    public static CompactWordTree open(Path file, Path source, boolean transitiveReduction) throws IOException {
+        if (!Files.isRegularFile(file) || Files.size(file) < HEADER_SIZE) {
+            return null;
+        }
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+        int magic = buffer.getInt(0);
+        int version = buffer.getInt(4);
+        if (magic != MAGIC || version != VERSION) {
+            log.warn("词典镜像 {} 格式或版本不匹配，需要重新生成", file);
+            return null;
+        }
+        boolean reduced = (buffer.getInt(8) & FLAG_TRANSITIVE_REDUCTION) != 0;
+        int size = buffer.getInt(12);
+        long sourceLength = buffer.getLong(16);
+        long sourceModified = buffer.getLong(24);
+        int charCount = buffer.getInt(32);
+        int childEdges = buffer.getInt(36);
+        int parentEdges = buffer.getInt(40);
+        long checksum = buffer.getLong(44);
+        if (reduced != transitiveReduction
+                || sourceLength != Files.size(source)
+                || sourceModified != Files.getLastModifiedTime(source).toMillis()) {
+            log.info("词典镜像 {} 已过期，需要重新生成", file);
+            return null;
+        }
+
+        int count = size + 1;
+        int charBytes = align(charCount * 2);
+        long bodySize = (long) charBytes + 4L * (count * 4 + 1 + (count + 1) + childEdges + (count + 1) + parentEdges);
+        if (buffer.capacity() != HEADER_SIZE + bodySize) {
+            log.warn("词典镜像 {} 长度不正确，需要重新生成", file);
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(section(buffer, HEADER_SIZE, (int) bodySize));
+        if (crc.getValue() != checksum) {
+            log.warn("词典镜像 {} 校验和不匹配，需要重新生成", file);
+            return null;
+        }
+
+        int position = HEADER_SIZE;
+        CharBuffer chars = section(buffer, position, charCount * 2).asCharBuffer();
+        position += charBytes;
+        IntBuffer strings = section(buffer, position, (count * 4 + 1) * 4).asIntBuffer();
+        position += (count * 4 + 1) * 4;
+        IntBuffer childOffsets = section(buffer, position, (count + 1) * 4).asIntBuffer();
+        position += (count + 1) * 4;
+        IntBuffer childTargets = section(buffer, position, childEdges * 4).asIntBuffer();
+        position += childEdges * 4;
+        IntBuffer parentOffsets = section(buffer, position, (count + 1) * 4).asIntBuffer();
+        position += (count + 1) * 4;
+        IntBuffer parentTargets = section(buffer, position, parentEdges * 4).asIntBuffer();
+        log.info("已映射词典镜像 {}：{} 个单词", file, size);
+        return new CompactWordTree(size, reduced, chars, strings, childOffsets, childTargets, parentOffsets, parentTargets);
+    }
+
+    /**
+     * 截取缓冲区的一段，保持小端序
+     */
+    private static ByteBuffer section(ByteBuffer buffer, int position, int length) {
+        ByteBuffer duplicate = buffer.duplicate();
+        ((Buffer) duplicate).position(position);
+        ((Buffer) duplicate).limit(position + length);
+        return duplicate.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * 对齐到 4 字节
+     */
+    private static int align(int bytes) {
+        return (bytes + 3) & ~3;
+    }
+}
@@ -0,0 +1,213 @@
+package com.slixils.v2;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 流式读取词典 JSON 文件（Word 对象数组），每次只解析一个条目
+ * <p>
+ * 翻译直接取第一条写入 Word.translation，不生成 JsonElement；
+ * 同时记录已读取的字节数，用于估算加载进度。
+ */
+@Slf4j
+public class DictionaryReader implements Closeable {
+
+    private static final String NO_TRANSLATION = "无翻译";
+
+    private final CountingInputStream input;
+    private final JsonReader json;
+    private final long length;
+    private boolean started;
+
+    /**
+     * 打开词典文件
+     * @param file 词典 JSON 文件路径
+     * @throws IOException 打开失败
+     */
+    public DictionaryReader(Path file) throws IOException {
+        this.length = Files.size(file);
+        this.input = new CountingInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+        this.json = new JsonReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        this.json.setLenient(true);
+    }
+
+    /**
+     * 读取下一个条目
+     * @return 单词，文件读完时返回 null
+     * @throws IOException 读取失败，或条目不是预期的 JSON 结构
+     */
+    public Word next() throws IOException {
+        try {
+            if (!started) {
+                json.beginArray();
+                started = true;
+            }
+            if (!json.hasNext()) {
+                return null;
+            }
+            return readWord();
+        } catch (IllegalStateException | NumberFormatException e) {
+            // JsonReader 遇到类型不符的值时抛出 IllegalStateException，统一为解析失败
+            throw new IOException("词典格式错误: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 读取至多 max 个条目
+     * @param max 最大条目数
+     * @return 单词列表，文件读完时返回空列表
+     * @throws IOException 读取或解析失败
+     */
+    public List<Word> nextBatch(int max) throws IOException {
+        List<Word> batch = new ArrayList<>(max);
+        Word word;
+        while (batch.size() < max && (word = next()) != null) {
+            batch.add(word);
+        }
+        return batch;
+    }
+
+    /**
+     * 已读取的字节数（含缓冲区中尚未解析的部分）
+     * @return 字节数
+     */
+    public long position() {
+        return input.count;
+    }
+
+    /**
+     * 文件总字节数
+     * @return 字节数
+     */
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        json.close();
+    }
+
+    private Word readWord() throws IOException {
+        Word word = new Word();
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "name":
+                    word.name = nextString();
+                    break;
+                case "trans":
+                    word.translation = readTranslation(word.name);
+                    break;
+                case "usphone":
+                    word.usphone = nextString();
+                    break;
+                case "ukphone":
+                    word.ukphone = nextString();
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+        return word;
+    }
+
+    /**
+     * 读取 trans 字段，规则与 Word.resolveTranslation 相同：数组取第一条，null 或空数组为 "无翻译"
+     */
+    private String readTranslation(String name) throws IOException {
+        JsonToken token = json.peek();
+        if (token == JsonToken.BEGIN_ARRAY) {
+            json.beginArray();
+            String first = NO_TRANSLATION;
+            if (json.hasNext()) {
+                first = scalar(name);
+            }
+            while (json.hasNext()) {
+                json.skipValue();
+            }
+            json.endArray();
+            return first;
+        }
+        if (token == JsonToken.NULL) {
+            json.nextNull();
+            return NO_TRANSLATION;
+        }
+        return scalar(name);
+    }
+
+    /**
+     * 读取一个字符串、数字或布尔值，其他类型跳过并返回 "无翻译"
+     */
+    private String scalar(String name) throws IOException {
+        switch (json.peek()) {
+            case STRING:
+            case NUMBER:
+                return json.nextString();
+            case BOOLEAN:
+                return String.valueOf(json.nextBoolean());
+            default:
+                json.skipValue();
+                log.error("解析翻译时出错 for word '{}': 不是字符串", name);
+                return NO_TRANSLATION;
+        }
+    }
+
+    private String nextString() throws IOException {
+        if (json.peek() == JsonToken.NULL) {
+            json.nextNull();
+            return null;
+        }
+        return json.nextString();
+    }
+
+    /**
+     * 统计读取字节数的输入流
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
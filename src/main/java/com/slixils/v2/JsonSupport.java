@@ -0,0 +1,67 @@
+package com.slixils.v2;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.DefaultIndenter;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * 共享的 JSON 序列化工具
+ * <p>
+ * ObjectMapper 配置完成后线程安全，全局共用一份，不再每次序列化都重新创建。
+ * 格式化输出用的 PrettyPrinter 带有缩进状态，每个生成器各自复制一份。
+ */
+final class JsonSupport {
+
+    static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /** 对象和数组都逐行缩进两个空格 */
+    private static final DefaultPrettyPrinter PRETTY_PRINTER;
+
+    static {
+        DefaultIndenter indenter = new DefaultIndenter("  ", "\n");
+        PRETTY_PRINTER = new DefaultPrettyPrinter()
+                .withObjectIndenter(indenter)
+                .withArrayIndenter(indenter);
+    }
+
+    private JsonSupport() {
+    }
+
+    /**
+     * 创建写入字符流的紧凑格式生成器
+     * @param writer 字符流
+     * @return 生成器
+     * @throws IOException 创建失败
+     */
+    static JsonGenerator generator(Writer writer) throws IOException {
+        return MAPPER.getFactory().createGenerator(writer);
+    }
+
+    /**
+     * 创建写入字符流的格式化生成器
+     * @param writer 字符流
+     * @return 生成器
+     * @throws IOException 创建失败
+     */
+    static JsonGenerator prettyGenerator(Writer writer) throws IOException {
+        return generator(writer).setPrettyPrinter(PRETTY_PRINTER.createInstance());
+    }
+
+    /**
+     * 创建写入字节流的格式化生成器，UTF-8 编码。关闭生成器时只刷新、不关闭字节流
+     * @param out 字节流，例如 HTTP 响应
+     * @return 生成器
+     * @throws IOException 创建失败
+     */
+    static JsonGenerator prettyGenerator(OutputStream out) throws IOException {
+        return MAPPER.getFactory().createGenerator(out, JsonEncoding.UTF8)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .setPrettyPrinter(PRETTY_PRINTER.createInstance());
+    }
+}
@@ -0,0 +1,177 @@
+package com.slixils.v2;
+
+/**
+ * 词典加载进度
+ * <p>
+ * 流式加载时无法预先知道条目总数，总数按已读字节所占比例估算，加载完成后为实际条目数。
+ * 文件分多遍读取时（先加载高频单词），每一遍重新计算字节进度，之前各遍加载的条目作为基数。
+ * 各字段由加载线程更新、查询线程读取，只保证单个字段可见，不保证多个字段之间一致。
+ */
+public class LoadProgress {
+
+    /** 加载状态 */
+    public enum State {
+        /** 尚未开始 */
+        PENDING,
+        /** 正在加载，只有部分单词可查 */
+        LOADING,
+        /** 全部单词已可查 */
+        READY,
+        /** 加载失败 */
+        FAILED
+    }
+
+    private volatile State state = State.PENDING;
+    private volatile long loaded;
+    /** 本遍开始前已加载的条目数 */
+    private volatile long base;
+    private volatile long bytesRead;
+    private volatile long bytesTotal;
+    private volatile long startedAt;
+    private volatile long passStartedAt;
+    private volatile long finishedAt;
+    private volatile String source;
+    private volatile String error;
+
+    /**
+     * 开始加载，或开始再读一遍文件
+     * @param source 数据来源描述
+     * @param bytesTotal 文件总字节数
+     */
+    void start(String source, long bytesTotal) {
+        long now = System.currentTimeMillis();
+        this.source = source;
+        this.bytesTotal = bytesTotal;
+        this.bytesRead = 0;
+        this.base = loaded;
+        if (state != State.LOADING) {
+            this.startedAt = now;
+        }
+        this.passStartedAt = now;
+        this.state = State.LOADING;
+    }
+
+    /**
+     * 记录一批条目已加载
+     * @param words 本批条目数
+     * @param position 已读取的字节数
+     */
+    void advance(int words, long position) {
+        loaded += words;
+        bytesRead = position;
+    }
+
+    /**
+     * 加载完成，全部单词已可查
+     * @param source 数据来源描述
+     * @param words 单词总数
+     */
+    void complete(String source, long words) {
+        if (state == State.PENDING) {
+            this.startedAt = System.currentTimeMillis();
+        }
+        this.source = source;
+        this.loaded = words;
+        this.bytesRead = bytesTotal;
+        this.finishedAt = System.currentTimeMillis();
+        this.state = State.READY;
+    }
+
+    /**
+     * 加载失败
+     * @param error 失败原因
+     */
+    void fail(String error) {
+        this.error = error;
+        this.finishedAt = System.currentTimeMillis();
+        this.state = State.FAILED;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isReady() {
+        return state == State.READY;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * 已加载的条目数
+     */
+    public long getLoaded() {
+        return loaded;
+    }
+
+    /**
+     * 条目总数：加载中为按字节比例的估算值
+     */
+    public long getTotal() {
+        long read = bytesRead;
+        if (state != State.LOADING || read <= 0) {
+            return loaded;
+        }
+        long before = base;
+        return Math.max(loaded, before + Math.round((double) (loaded - before) * bytesTotal / read));
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getBytesTotal() {
+        return bytesTotal;
+    }
+
+    /**
+     * 已加载的比例，0 到 1
+     */
+    public double getFraction() {
+        if (state == State.READY) {
+            return 1;
+        }
+        long total = bytesTotal;
+        return total > 0 ? Math.min(1, (double) bytesRead / total) : 0;
+    }
+
+    /**
+     * 已耗时（毫秒）
+     */
+    public long getElapsedMillis() {
+        if (startedAt == 0) {
+            return 0;
+        }
+        long end = state == State.LOADING ? System.currentTimeMillis() : finishedAt;
+        return end - startedAt;
+    }
+
+    /**
+     * 平均加载速度（条目/秒）
+     */
+    public double getRate() {
+        long elapsed = getElapsedMillis();
+        return elapsed > 0 ? loaded * 1000.0 / elapsed : 0;
+    }
+
+    /**
+     * 按字节速度估算的剩余时间（秒），未在加载中或无法估算时为 -1
+     */
+    public long getEtaSeconds() {
+        if (state != State.LOADING) {
+            return state == State.READY ? 0 : -1;
+        }
+        long elapsed = System.currentTimeMillis() - passStartedAt;
+        long read = bytesRead;
+        if (elapsed <= 0 || read <= 0) {
+            return -1;
+        }
+        return Math.round((double) (bytesTotal - read) * elapsed / read / 1000);
+    }
+}
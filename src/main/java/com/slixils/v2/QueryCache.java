@@ -0,0 +1,121 @@
+package com.slixils.v2;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 查询结果缓存：按单词缓存序列化好的 JSON，容量满时淘汰最久未访问的条目（LRU）
+ * <p>
+ * 插入单词时由 WordTree 通知哪些单词的查询结果可能变化，只作废这些条目。
+ * 为避免查询期间发生插入、把过期结果放回缓存，每次作废都会递增纪元，
+ * 放入时纪元与开始查询时不一致则放弃。
+ */
+public class QueryCache implements WordTree.ChangeListener {
+
+    private final int capacity;
+    private final LinkedHashMap<String, String> entries;
+    private long epoch;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * 创建缓存
+     * @param capacity 最多缓存的单词数，0 表示不缓存
+     */
+    public QueryCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                if (size() > QueryCache.this.capacity) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 读取缓存
+     * @param word 单词
+     * @return 缓存的 JSON，没有则返回 null
+     */
+    public String get(String word) {
+        if (capacity <= 0) {
+            return null;
+        }
+        String json;
+        synchronized (this) {
+            json = entries.get(word);
+        }
+        if (json != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return json;
+    }
+
+    /**
+     * 当前纪元，查询开始前读取，放入时传回
+     * @return 纪元
+     */
+    public synchronized long epoch() {
+        return epoch;
+    }
+
+    /**
+     * 放入缓存，期间有过作废则放弃
+     * @param word 单词
+     * @param json 查询结果
+     * @param expectedEpoch 查询开始前读取的纪元
+     */
+    public synchronized void put(String word, String json, long expectedEpoch) {
+        if (capacity > 0 && epoch == expectedEpoch) {
+            entries.put(word, json);
+        }
+    }
+
+    @Override
+    public synchronized void changed(Collection<TrieNode> nodes) {
+        epoch++;
+        for (TrieNode node : nodes) {
+            if (entries.remove(node.word) != null) {
+                invalidations.increment();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void reset() {
+        epoch++;
+        invalidations.add(entries.size());
+        entries.clear();
+    }
+
+    /**
+     * 缓存统计
+     * @return 容量、条目数、命中、未命中、命中率、淘汰和作废次数
+     */
+    public Map<String, Object> stats() {
+        long hit = hits.sum();
+        long miss = misses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("capacity", capacity);
+        synchronized (this) {
+            stats.put("size", entries.size());
+        }
+        stats.put("hits", hit);
+        stats.put("misses", miss);
+        stats.put("hitRate", hit + miss == 0 ? 0 : (double) hit / (hit + miss));
+        stats.put("evictions", evictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+}
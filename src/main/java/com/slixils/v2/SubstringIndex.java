@@ -0,0 +1,416 @@
+package com.slixils.v2;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 子串包含关系索引
+ * <p>
+ * 由两部分组成：
+ * <ul>
+ *     <li>单词前缀字典树：从文本的每个起点沿字典树向下走，即可找出文本中出现的所有单词；</li>
+ *     <li>按字典序排列的后缀集合：包含 X 的单词必有某个后缀以 X 开头，定位到 X 后顺序扫描即可。</li>
+ * </ul>
+ * 后缀集合分为两层：批量加入的后缀一次排序后放在数组里，逐个加入的后缀放在 TreeSet 中，
+ * TreeSet 超过数组的 1/8 时合并回数组。
+ * 删除单词时 TreeSet 中的后缀直接移除，数组中的后缀只记下所属单词、查询时跳过，
+ * 下次合并或被删除的后缀超过数组的 1/8 时再从数组中清除。
+ * 两类查询的代价只与文本长度和结果数量有关（后缀集合额外有一次 O(log M) 的定位），与词典大小无关。
+ * <p>
+ * 字典树的每个节点还保存以该前缀开头的前 SUGGEST_LIMIT 个单词（短的在前，等长按字母顺序），
+ * 前缀补全只需走到前缀对应的节点。
+ */
+public class SubstringIndex implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** 每个字典树节点保存的补全候选数，也是补全一次最多返回的单词数 */
+    public static final int SUGGEST_LIMIT = 10;
+    /** 补全候选的排序：短的在前，等长按字母顺序 */
+    private static final Comparator<TrieNode> BY_LENGTH = Comparator.<TrieNode>comparingInt(node -> node.word.length())
+            .thenComparing(TrieNode.BY_WORD);
+
+    /** 单词前缀字典树的根 */
+    private final Node trieRoot = new Node();
+    private static final SuffixComparator COMPARATOR = new SuffixComparator();
+    /** 逐个加入的后缀少于该数量时不合并 */
+    private static final int MERGE_THRESHOLD = 4096;
+    private static final Suffix[] NO_SUFFIXES = new Suffix[0];
+
+    /** 已排序的后缀数组 */
+    private Suffix[] sorted = NO_SUFFIXES;
+    /** 最近逐个加入、尚未合并进数组的后缀 */
+    private final TreeSet<Suffix> recent = new TreeSet<>(COMPARATOR);
+    /** 已删除、但后缀仍留在数组中的单词 */
+    private final Set<TrieNode> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+    /** 数组中属于已删除单词的后缀数 */
+    private int removedSuffixes;
+
+    /**
+     * 将单词加入前缀字典树，之后 substringsOf 即可找到它
+     * @param node 单词节点
+     */
+    public void addToTrie(TrieNode node) {
+        String word = node.word;
+        Node current = trieRoot;
+        current.offer(node);
+        for (int i = 0; i < word.length(); i++) {
+            current = current.getOrCreate(word.charAt(i));
+            current.offer(node);
+        }
+        current.word = node;
+    }
+
+    /**
+     * 删除单词：从前缀字典树中移除，自下而上重新计算路径上各节点的补全候选，并删除不再使用的字典树节点；
+     * 后缀在 TreeSet 中的直接删除，在数组中的记为已删除
+     * @param node 单词节点
+     */
+    public void remove(TrieNode node) {
+        String word = node.word;
+        Node[] path = new Node[word.length() + 1];
+        Node current = trieRoot;
+        path[0] = current;
+        for (int i = 0; i < word.length(); i++) {
+            current = current.child(word.charAt(i));
+            if (current == null) {
+                return;
+            }
+            path[i + 1] = current;
+        }
+        if (current.word != node) {
+            return;
+        }
+        current.word = null;
+        for (int depth = word.length(); depth >= 0; depth--) {
+            Node trieNode = path[depth];
+            if (depth > 0 && trieNode.size == 0 && trieNode.word == null) {
+                path[depth - 1].removeChild(word.charAt(depth - 1));
+            } else if (trieNode.holds(node)) {
+                trieNode.refill();
+            }
+        }
+
+        int inSorted = 0;
+        for (int i = 0; i < word.length(); i++) {
+            if (!recent.remove(new Suffix(word, i, node))) {
+                inSorted++;
+            }
+        }
+        if (inSorted > 0) {
+            removed.add(node);
+            removedSuffixes += inSorted;
+            if (removedSuffixes > Math.max(MERGE_THRESHOLD, sorted.length / 8)) {
+                merge(Collections.emptyList());
+            }
+        }
+    }
+
+    /**
+     * 前缀补全
+     * @param prefix 前缀
+     * @param k 最多返回的单词数，不超过 SUGGEST_LIMIT
+     * @return 以 prefix 开头的单词，短的在前，等长按字母顺序
+     */
+    public List<TrieNode> suggest(String prefix, int k) {
+        Node current = trieRoot;
+        for (int i = 0; i < prefix.length() && current != null; i++) {
+            current = current.child(prefix.charAt(i));
+        }
+        if (current == null) {
+            return Collections.emptyList();
+        }
+        TrieNode[] top = current.top;
+        return new ArrayList<>(Arrays.asList(top).subList(0, Math.max(0, Math.min(k, top.length))));
+    }
+
+    /**
+     * 将单词的全部后缀加入后缀集合，之后 containing 即可找到它
+     * @param node 单词节点
+     */
+    public void addSuffixes(TrieNode node) {
+        String word = node.word;
+        for (int i = 0; i < word.length(); i++) {
+            recent.add(new Suffix(word, i, node));
+        }
+        if (recent.size() > Math.max(MERGE_THRESHOLD, sorted.length / 8)) {
+            merge(Collections.emptyList());
+        }
+    }
+
+    /**
+     * 批量加入多个单词的后缀，与已有后缀一起排序一次
+     * @param nodes 单词节点
+     */
+    public void addSuffixes(Collection<TrieNode> nodes) {
+        merge(nodes);
+    }
+
+    /**
+     * 将 recent 和 nodes 的后缀合并进有序数组：只对新增后缀排序，再与已有数组归并
+     */
+    private void merge(Collection<TrieNode> nodes) {
+        int count = recent.size();
+        for (TrieNode node : nodes) {
+            count += node.word.length();
+        }
+        Suffix[] added = recent.toArray(new Suffix[count]);
+        int position = recent.size();
+        for (TrieNode node : nodes) {
+            String word = node.word;
+            for (int i = 0; i < word.length(); i++) {
+                added[position++] = new Suffix(word, i, node);
+            }
+        }
+        Arrays.parallelSort(added, COMPARATOR);
+
+        Suffix[] current = sorted;
+        if (!removed.isEmpty()) {
+            // 顺便清除已删除单词的后缀
+            Suffix[] kept = new Suffix[current.length - removedSuffixes];
+            int n = 0;
+            for (Suffix suffix : current) {
+                if (!removed.contains(suffix.node)) {
+                    kept[n++] = suffix;
+                }
+            }
+            current = kept;
+            removed.clear();
+            removedSuffixes = 0;
+        }
+
+        Suffix[] merged = new Suffix[current.length + added.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < current.length && j < added.length) {
+            merged[k++] = COMPARATOR.compare(current[i], added[j]) <= 0 ? current[i++] : added[j++];
+        }
+        System.arraycopy(current, i, merged, k, current.length - i);
+        System.arraycopy(added, j, merged, k + current.length - i, added.length - j);
+        sorted = merged;
+        recent.clear();
+    }
+
+    /**
+     * 查找所有作为 text 子串出现的单词（不含 text 本身）
+     * @param text 文本
+     * @return 单词节点列表，每个单词只出现一次
+     */
+    public List<TrieNode> substringsOf(String text) {
+        List<TrieNode> result = new ArrayList<>();
+        Set<TrieNode> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            Node current = trieRoot;
+            for (int j = i; j < length; j++) {
+                current = current.child(text.charAt(j));
+                if (current == null) {
+                    break;
+                }
+                // 跳过与 text 完全相同的单词
+                if (current.word != null && (i > 0 || j < length - 1) && seen.add(current.word)) {
+                    result.add(current.word);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 查找所有包含 text 的单词（不含 text 本身）
+     * @param text 文本
+     * @return 单词节点列表，每个单词只出现一次
+     */
+    public List<TrieNode> containing(String text) {
+        List<TrieNode> result = new ArrayList<>();
+        Set<TrieNode> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        Suffix probe = new Suffix(text, 0, null);
+        // 探针不在集合中，二分查找返回的插入位置即第一个不小于 text 的后缀
+        boolean skip = !removed.isEmpty();
+        for (int i = -Arrays.binarySearch(sorted, probe, COMPARATOR) - 1; i < sorted.length; i++) {
+            if (skip && removed.contains(sorted[i].node)) {
+                // 已删除单词的后缀仍以 text 开头才会走到这里，继续扫描
+                if (!sorted[i].text.startsWith(text, sorted[i].offset)) {
+                    break;
+                }
+                continue;
+            }
+            if (!collect(sorted[i], text, seen, result)) {
+                break;
+            }
+        }
+        for (Suffix suffix : recent.tailSet(probe, true)) {
+            if (!collect(suffix, text, seen, result)) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 收集以 text 开头的后缀所属的单词
+     * @return 后缀不以 text 开头时返回 false，表示扫描结束
+     */
+    private static boolean collect(Suffix suffix, String text, Set<TrieNode> seen, List<TrieNode> result) {
+        if (!suffix.text.startsWith(text, suffix.offset)) {
+            return false;
+        }
+        if (!suffix.text.equals(text) && seen.add(suffix.node)) {
+            result.add(suffix.node);
+        }
+        return true;
+    }
+
+    /**
+     * 前缀字典树节点，子节点按字符有序存放，使用二分查找
+     */
+    private static class Node implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private static final char[] NO_KEYS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+        private static final TrieNode[] NO_WORDS = new TrieNode[0];
+
+        char[] keys = NO_KEYS;
+        Node[] next = NO_CHILDREN;
+        int size;
+        /** 以该节点结尾的单词，没有则为 null */
+        TrieNode word;
+        /** 以该前缀开头的前 SUGGEST_LIMIT 个单词，按 BY_LENGTH 排序；整体替换，读取时不会看到修改到一半的数组 */
+        TrieNode[] top = NO_WORDS;
+
+        /**
+         * 单词排名进入前 SUGGEST_LIMIT 时加入候选
+         */
+        void offer(TrieNode node) {
+            TrieNode[] current = top;
+            if (current.length == SUGGEST_LIMIT && BY_LENGTH.compare(node, current[SUGGEST_LIMIT - 1]) >= 0) {
+                return;
+            }
+            int i = -Arrays.binarySearch(current, node, BY_LENGTH) - 1;
+            if (i < 0) {
+                return;
+            }
+            int length = Math.min(current.length + 1, SUGGEST_LIMIT);
+            TrieNode[] updated = new TrieNode[length];
+            System.arraycopy(current, 0, updated, 0, i);
+            updated[i] = node;
+            System.arraycopy(current, i, updated, i + 1, length - i - 1);
+            top = updated;
+        }
+
+        boolean holds(TrieNode node) {
+            for (TrieNode candidate : top) {
+                if (candidate == node) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 由本节点的单词和各子节点的候选重新计算候选，子节点的候选必须已经是最新的
+         */
+        void refill() {
+            List<TrieNode> candidates = new ArrayList<>();
+            if (word != null) {
+                candidates.add(word);
+            }
+            for (int i = 0; i < size; i++) {
+                candidates.addAll(Arrays.asList(next[i].top));
+            }
+            candidates.sort(BY_LENGTH);
+            top = candidates.subList(0, Math.min(SUGGEST_LIMIT, candidates.size())).toArray(NO_WORDS);
+        }
+
+        void removeChild(char c) {
+            int i = Arrays.binarySearch(keys, 0, size, c);
+            if (i < 0) {
+                return;
+            }
+            System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+            System.arraycopy(next, i + 1, next, i, size - i - 1);
+            size--;
+            next[size] = null;
+        }
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(keys, 0, size, c);
+            return i >= 0 ? next[i] : null;
+        }
+
+        Node getOrCreate(char c) {
+            int i = Arrays.binarySearch(keys, 0, size, c);
+            if (i >= 0) {
+                return next[i];
+            }
+            i = -i - 1;
+            if (size == keys.length) {
+                int capacity = Math.max(2, size * 2);
+                keys = Arrays.copyOf(keys, capacity);
+                next = Arrays.copyOf(next, capacity);
+            }
+            System.arraycopy(keys, i, keys, i + 1, size - i);
+            System.arraycopy(next, i, next, i + 1, size - i);
+            Node child = new Node();
+            keys[i] = c;
+            next[i] = child;
+            size++;
+            return child;
+        }
+    }
+
+    /**
+     * 单词的一个后缀，用 (单词, 起始下标) 表示，不复制字符串
+     */
+    private static class Suffix implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final String text;
+        final int offset;
+        /** 后缀所属单词，查询用的探针为 null */
+        final TrieNode node;
+
+        Suffix(String text, int offset, TrieNode node) {
+            this.text = text;
+            this.offset = offset;
+            this.node = node;
+        }
+    }
+
+    /**
+     * 先按后缀文本排序；文本相同时探针排在最前，其余按所属单词排序
+     */
+    private static class SuffixComparator implements Comparator<Suffix>, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public int compare(Suffix a, Suffix b) {
+            int i = a.offset;
+            int j = b.offset;
+            while (i < a.text.length() && j < b.text.length()) {
+                char c1 = a.text.charAt(i++);
+                char c2 = b.text.charAt(j++);
+                if (c1 != c2) {
+                    return c1 - c2;
+                }
+            }
+            int c = (a.text.length() - a.offset) - (b.text.length() - b.offset);
+            if (c != 0) {
+                return c;
+            }
+            if (a.node == null || b.node == null) {
+                return a.node == b.node ? 0 : (a.node == null ? -1 : 1);
+            }
+            return a.text.compareTo(b.text);
+        }
+    }
+}
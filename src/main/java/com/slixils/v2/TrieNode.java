@@ -1,20 +1,34 @@
 package com.slixils.v2;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonGenerator;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 import java.util.*;
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 // 定义 TrieNode 类
 @Data
 
 public class TrieNode implements Serializable {
     private static final long serialVersionUID = 1L;
+    /** 按单词字母顺序比较节点 */
+    static final Comparator<TrieNode> BY_WORD = Comparator.comparing(node -> node.word);
+    /** 节点编号，由 WordTree 分配，根节点为 0 */
+    int id;
     String word;
     String translation;
     String ushone;
     String ukphone;
+    // 图中存在多父节点，children / parents 不参与 toString / equals，避免沿图递归
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     List<TrieNode> children;
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     List<TrieNode> parents;
 
     /**
@@ -34,47 +48,139 @@ public class TrieNode implements Serializable {
     }
 
     /**
-     * 添加子节点并排序
+     * 添加子节点，二分查找插入位置以保持字母顺序
      * @param child 子节点
      */
     public void addChild(TrieNode child) {
-        this.children.add(child);
-        // 按照字母顺序对 children 排序
-        Collections.sort(this.children, Comparator.comparing(node -> node.word));
+        insertSorted(this.children, child);
     }
 
     /**
-     * 查找子节点
+     * 查找子节点，children 按字母顺序排列，使用二分查找
      * @param word 要查找的单词
      * @return 找到的子节点，否则返回 null
      */
     public TrieNode findChild(String word) {
-        for (TrieNode child : children) {
-            if (child.word.equals(word)) {
-                return child;
-            }
-        }
-        return null;
+        int i = indexOf(this.children, word);
+        return i >= 0 ? this.children.get(i) : null;
     }
 
     /**
-     * 添加父节点并排序
+     * 添加父节点，二分查找插入位置以保持字母顺序
      * @param parent 父节点
      */
     public void addParent(TrieNode parent) {
+        insertSorted(this.parents, parent);
+    }
+
+    /**
+     * 移除子节点
+     * @param child 子节点
+     */
+    void removeChild(TrieNode child) {
+        int i = indexOf(this.children, child.word);
+        if (i >= 0) {
+            this.children.remove(i);
+        }
+    }
+
+    /**
+     * 移除父节点
+     * @param parent 父节点
+     */
+    void removeParent(TrieNode parent) {
+        int i = indexOf(this.parents, parent.word);
+        if (i >= 0) {
+            this.parents.remove(i);
+        }
+    }
+
+    /**
+     * 在末尾追加子节点，不排序。批量连接结束后必须调用 sortLinks
+     * @param child 子节点
+     */
+    void appendChild(TrieNode child) {
+        this.children.add(child);
+    }
+
+    /**
+     * 在末尾追加父节点，不排序。批量连接结束后必须调用 sortLinks
+     * @param parent 父节点
+     */
+    void appendParent(TrieNode parent) {
         this.parents.add(parent);
-        // 按照字母顺序对 parents 排序
-        Collections.sort(this.parents, Comparator.comparing(node -> node.word));
     }
 
     /**
-     * 递归将节点转换为JSON格式的Map
+     * 对 children 和 parents 统一排序一次，供批量连接节点后调用
+     */
+    void sortLinks() {
+        this.children.sort(BY_WORD);
+        this.parents.sort(BY_WORD);
+    }
+
+    /**
+     * 将节点插入按字母顺序排列的列表，已存在同名节点时不重复插入
+     * @param list 有序列表
+     * @param node 要插入的节点
+     */
+    private static void insertSorted(List<TrieNode> list, TrieNode node) {
+        int i = indexOf(list, node.word);
+        if (i < 0) {
+            list.add(-i - 1, node);
+        }
+    }
+
+    /**
+     * 在按字母顺序排列的列表中二分查找单词
+     * @param list 有序列表
+     * @param word 单词
+     * @return 找到时返回下标，否则返回 (-(插入位置) - 1)
+     */
+    static int indexOf(List<TrieNode> list, String word) {
+        int low = 0;
+        int high = list.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int c = list.get(mid).word.compareTo(word);
+            if (c < 0) {
+                low = mid + 1;
+            } else if (c > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * 递归将节点转换为JSON格式的Map。
+     * 子节点方向和父节点方向各自只完整输出每个节点一次，重复出现的节点输出为 {"ref": 节点编号}
      * @param includeParents 是否包含父节点信息
      * @param includeChildren 是否包含子节点信息
      * @return Map表示的JSON结构
      */
     public Map<String, Object> toJson(boolean includeParents, boolean includeChildren) {
+        BitSet visitedChildren = new BitSet();
+        BitSet visitedParents = new BitSet();
+        visitedChildren.set(this.id);
+        visitedParents.set(this.id);
+        return toJson(includeParents, includeChildren, visitedChildren, visitedParents);
+    }
+
+    /**
+     * 递归将节点转换为JSON格式的Map
+     * @param includeParents 是否包含父节点信息
+     * @param includeChildren 是否包含子节点信息
+     * @param visitedChildren 子节点方向已输出的节点编号
+     * @param visitedParents 父节点方向已输出的节点编号
+     * @return Map表示的JSON结构
+     */
+    private Map<String, Object> toJson(boolean includeParents, boolean includeChildren,
+                                       BitSet visitedChildren, BitSet visitedParents) {
         Map<String, Object> jsonMap = new LinkedHashMap<>();
+        jsonMap.put("id", this.id);
         jsonMap.put("word", this.word);
         jsonMap.put("translation", this.translation);
         jsonMap.put("ushone", this.ushone);
@@ -84,7 +190,12 @@ public class TrieNode implements Serializable {
         if (includeChildren && !this.children.isEmpty()) {
             List<Map<String, Object>> childrenJson = new ArrayList<>();
             for (TrieNode child : this.children) {
-                childrenJson.add(child.toJson(false, true)); // 子节点不需要再包含父节点
+                if (visitedChildren.get(child.id)) {
+                    childrenJson.add(Collections.singletonMap("ref", child.id));
+                    continue;
+                }
+                visitedChildren.set(child.id);
+                childrenJson.add(child.toJson(false, true, visitedChildren, visitedParents)); // 子节点不需要再包含父节点
             }
             jsonMap.put("children", childrenJson);
         }
@@ -93,7 +204,12 @@ public class TrieNode implements Serializable {
         if (includeParents && !this.parents.isEmpty()) {
             List<Map<String, Object>> parentsJson = new ArrayList<>();
             for (TrieNode parent : this.parents) {
-                parentsJson.add(parent.toJson(true, false)); // 父节点不需要再包含子节点
+                if (visitedParents.get(parent.id)) {
+                    parentsJson.add(Collections.singletonMap("ref", parent.id));
+                    continue;
+                }
+                visitedParents.set(parent.id);
+                parentsJson.add(parent.toJson(true, false, visitedChildren, visitedParents)); // 父节点不需要再包含子节点
             }
             jsonMap.put("parents", parentsJson);
         }
@@ -101,6 +217,98 @@ public class TrieNode implements Serializable {
         return jsonMap;
     }
 
+    /**
+     * 将节点直接写入 JSON 生成器，结构与 toJson 相同，不生成中间的 Map
+     * @param gen JSON 生成器
+     * @param includeParents 是否包含父节点信息
+     * @param includeChildren 是否包含子节点信息
+     * @throws IOException 写入失败
+     */
+    public void writeJson(JsonGenerator gen, boolean includeParents, boolean includeChildren) throws IOException {
+        writeJson(gen, includeParents, includeChildren, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 将节点写入 JSON 生成器，父节点和子节点各自最多展开 depth 层。
+     * 超出层数的节点不输出 children / parents，改为输出 childCount / parentCount，客户端可按需继续展开；
+     * 这样的节点每次出现都输出计数，ref 只指向已展开的节点
+     * @param gen JSON 生成器
+     * @param includeParents 是否包含父节点信息
+     * @param includeChildren 是否包含子节点信息
+     * @param depth 展开层数，0 表示只输出节点本身
+     * @throws IOException 写入失败
+     */
+    public void writeJson(JsonGenerator gen, boolean includeParents, boolean includeChildren, int depth)
+            throws IOException {
+        BitSet visitedChildren = new BitSet();
+        BitSet visitedParents = new BitSet();
+        visitedChildren.set(this.id);
+        visitedParents.set(this.id);
+        writeJson(gen, includeParents, includeChildren, depth, visitedChildren, visitedParents);
+    }
+
+    private void writeJson(JsonGenerator gen, boolean includeParents, boolean includeChildren, int depth,
+                           BitSet visitedChildren, BitSet visitedParents) throws IOException {
+        gen.writeStartObject();
+        gen.writeNumberField("id", this.id);
+        gen.writeStringField("word", this.word);
+        gen.writeStringField("translation", this.translation);
+        gen.writeStringField("ushone", this.ushone);
+        gen.writeStringField("ukphone", this.ukphone);
+
+        if (includeChildren && !this.children.isEmpty()) {
+            if (depth <= 0) {
+                gen.writeNumberField("childCount", this.children.size());
+            } else {
+                gen.writeArrayFieldStart("children");
+                for (TrieNode child : this.children) {
+                    if (visitedChildren.get(child.id)) {
+                        writeRef(gen, child.id);
+                        continue;
+                    }
+                    // 只有 childCount 的节点不算已输出，之后在更浅的层再出现时要展开，不能输出为 ref
+                    if (depth > 1 || child.children.isEmpty()) {
+                        visitedChildren.set(child.id);
+                    }
+                    child.writeJson(gen, false, true, depth - 1, visitedChildren, visitedParents);
+                }
+                gen.writeEndArray();
+            }
+        }
+
+        if (includeParents && !this.parents.isEmpty()) {
+            if (depth <= 0) {
+                gen.writeNumberField("parentCount", this.parents.size());
+            } else {
+                gen.writeArrayFieldStart("parents");
+                for (TrieNode parent : this.parents) {
+                    if (visitedParents.get(parent.id)) {
+                        writeRef(gen, parent.id);
+                        continue;
+                    }
+                    if (depth > 1 || parent.parents.isEmpty()) {
+                        visitedParents.set(parent.id);
+                    }
+                    parent.writeJson(gen, true, false, depth - 1, visitedChildren, visitedParents);
+                }
+                gen.writeEndArray();
+            }
+        }
+        gen.writeEndObject();
+    }
+
+    /**
+     * 写入重复出现的节点 {"ref": 节点编号}
+     * @param gen JSON 生成器
+     * @param id 节点编号
+     * @throws IOException 写入失败
+     */
+    static void writeRef(JsonGenerator gen, int id) throws IOException {
+        gen.writeStartObject();
+        gen.writeNumberField("ref", id);
+        gen.writeEndObject();
+    }
+
     /**
      * 将节点转换为JSON字符串
      * @param includeParents 是否包含父节点
@@ -108,12 +316,24 @@ public class TrieNode implements Serializable {
      * @return JSON字符串
      */
     public String toJsonString(boolean includeParents, boolean includeChildren) {
-        try {
-            ObjectMapper mapper = new ObjectMapper();
-            return mapper.writeValueAsString(this.toJson(includeParents, includeChildren));
-        } catch (Exception e) {
-            e.printStackTrace();
-            return "{}";
+        return toJsonString(includeParents, includeChildren, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 将节点转换为JSON字符串，父节点和子节点各自最多展开 depth 层
+     * @param includeParents 是否包含父节点
+     * @param includeChildren 是否包含子节点
+     * @param depth 展开层数
+     * @return JSON字符串
+     */
+    public String toJsonString(boolean includeParents, boolean includeChildren, int depth) {
+        StringWriter out = new StringWriter();
+        try (JsonGenerator gen = JsonSupport.generator(out)) {
+            writeJson(gen, includeParents, includeChildren, depth);
+        } catch (IOException e) {
+            // StringWriter 不会抛出 IOException
+            throw new UncheckedIOException(e);
         }
+        return out.toString();
     }
-}
\ No newline at end of file
+}
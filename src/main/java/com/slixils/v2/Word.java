@@ -2,16 +2,50 @@ package com.slixils.v2;
 
 import com.google.gson.JsonElement;
 import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * 表示一个单词及其相关信息
  */
 @Data
+@Slf4j
 public class Word {
     String name;
     JsonElement trans;
+    /** 流式读取时直接解析出的第一条翻译，此时 trans 为空 */
+    String translation;
     String usphone;
     String ukphone;
 
+    /**
+     * 是否带有翻译字段
+     * @return trans 或 translation 不为空时返回 true
+     */
+    public boolean hasTranslation() {
+        return trans != null || translation != null;
+    }
 
+    /**
+     * 取第一条翻译，没有翻译或解析失败时返回 "无翻译"
+     * @return 翻译
+     */
+    public String resolveTranslation() {
+        if (translation != null) {
+            return translation;
+        }
+        try {
+            if (trans.isJsonArray()) {
+                if (trans.getAsJsonArray().size() > 0) {
+                    return trans.getAsJsonArray().get(0).getAsString();
+                }
+                return "无翻译";
+            } else if (!trans.isJsonNull()) {
+                return trans.getAsString();
+            }
+            return "无翻译";
+        } catch (Exception e) {
+            log.error("解析翻译时出错 for word '{}': {}", name, e.getMessage());
+            return "无翻译";
+        }
+    }
 }
\ No newline at end of file
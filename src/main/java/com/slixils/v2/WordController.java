@@ -2,9 +2,13 @@ package com.slixils.v2;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -55,14 +59,22 @@ public class WordController {
     /**
      * 查询单词信息 (父节点和子节点)
      * @param word 要查询的单词
-     * @return 单词信息或未找到提示
+     * @param depth 父节点和子节点各自展开的层数，不传则全部展开
+     * @return 单词信息；未找到时返回 404，词典加载中返回 503
      */
     @GetMapping("/queryWord/{word}")
-    public ResponseEntity<String> queryWord(@PathVariable String word) {
+    public ResponseEntity<String> queryWord(@PathVariable String word,
+                                            @RequestParam(required = false) Integer depth) {
+        if (depth != null && depth < 0) {
+            return ResponseEntity.badRequest().body("depth 不能小于 0");
+        }
         try {
-            String result = wordService.queryWord(word);
-            if (result.startsWith("未找到单词")) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(result);
+            String result = depth == null ? wordService.queryWord(word) : wordService.queryWord(word, depth);
+            if (result == null && !wordService.isReady()) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("{\"message\":\"词典加载中，请稍后重试\"}");
+            }
+            if (result == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("{\"message\":\"未找到单词: " + word + "\"}");
             }
             return ResponseEntity.ok(result);
         } catch (Exception e) {
@@ -81,6 +93,9 @@ public class WordController {
     public ResponseEntity<String> queryWordV1(@PathVariable String word) {
         try {
             String result = wordService.queryWordV1(word);
+            if (result.startsWith("未找到单词") && !wordService.isReady()) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("词典加载中，请稍后重试");
+            }
             if (result.startsWith("未找到单词")) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body(result);
             }
@@ -91,23 +106,212 @@ public class WordController {
     }
 
     /**
-     * 获取整个单词树的 JSON 表示
+     * 批量查询单词，一次请求查询多个单词
+     * @param words 单词列表，最多 WordService.MAX_BATCH_WORDS 个
+     * @param relations 是否包含父节点和子节点，默认包含
+     * @return results（单词到查询结果的映射）、missing（未找到的单词）和 ready
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<String> batchQuery(@RequestBody List<String> words,
+                                             @RequestParam(defaultValue = "true") boolean relations) {
+        if (words == null || words.isEmpty()) {
+            return ResponseEntity.badRequest().body("单词列表不能为空");
+        }
+        if (words.size() > WordService.MAX_BATCH_WORDS) {
+            return ResponseEntity.badRequest().body("一次最多查询 " + WordService.MAX_BATCH_WORDS + " 个单词");
+        }
+        try {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(wordService.batchQuery(words, relations));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("批量查询时发生错误: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 找出文本中出现的所有词典单词（包括长单词内部的子串）
+     * @param text 请求体中的文本
+     * @return 匹配结果：起止位置、单词、翻译和节点编号，按结束位置排列
+     */
+    @PostMapping("/scan")
+    public ResponseEntity<List<AhoCorasick.Match>> scan(@RequestBody String text) {
+        if (text == null || text.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(wordService.scan(text));
+    }
+
+    /**
+     * 前缀补全，供输入框联想使用
+     * @param prefix 前缀
+     * @param k 最多返回的单词数，默认 10，最大 10
+     * @return 以 prefix 开头的单词，短的在前
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<List<WordQueryResult.SimpleNode>> suggest(@RequestParam String prefix,
+                                                                    @RequestParam(defaultValue = "10") int k) {
+        if (prefix.isEmpty() || k <= 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(wordService.suggest(prefix, Math.min(k, SubstringIndex.SUGGEST_LIMIT)));
+    }
+
+    /**
+     * 获取整个单词树的 JSON 表示。
+     * 传入 cursor、limit 或 depth 任一参数时改为分页返回没有父节点的单词，与 /expand 的格式相同
+     * @param cursor 上一页的 nextCursor
+     * @param limit 每页节点数
+     * @param depth 每个节点向下展开的层数，默认 0
      * @return 单词树的 JSON 字符串
      */
     @GetMapping("/tree")
-    public ResponseEntity<String> getWordTree() {
+    public ResponseEntity<StreamingResponseBody> getWordTree(@RequestParam(required = false) String cursor,
+                                                             @RequestParam(required = false) Integer limit,
+                                                             @RequestParam(required = false) Integer depth) {
+        if (cursor != null || limit != null || depth != null) {
+            // 声明的类型必须是 StreamingResponseBody 才会按流式响应处理，分页结果也包装成流写出
+            ResponseEntity<String> page = children(null, cursor, limit, depth);
+            byte[] bytes = page.getBody().getBytes(StandardCharsets.UTF_8);
+            MediaType type = page.getHeaders().getContentType();
+            return ResponseEntity.status(page.getStatusCode())
+                    .contentType(type != null ? type : new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                    .body(out -> out.write(bytes));
+        }
+        // 边遍历边写入响应，不在内存中拼出整个 JSON 字符串
+        StreamingResponseBody body = wordService::writeWordTree;
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * 展开一个单词：分页列出包含它的单词（子节点），客户端按需逐层加载而不是一次取回整个图
+     * @param word 要展开的单词
+     * @param cursor 上一页的 nextCursor，不传表示第一页
+     * @param limit 每页节点数，默认 WordService.DEFAULT_PAGE_SIZE，最大 WordService.MAX_PAGE_SIZE
+     * @param depth 每个子节点再向下展开的层数，默认 0（只返回子节点数 childCount）
+     * @return word、total、items 和 nextCursor
+     */
+    @GetMapping("/expand/{word}")
+    public ResponseEntity<String> expand(@PathVariable String word,
+                                         @RequestParam(required = false) String cursor,
+                                         @RequestParam(required = false) Integer limit,
+                                         @RequestParam(required = false) Integer depth) {
+        return children(word, cursor, limit, depth);
+    }
+
+    private ResponseEntity<String> children(String word, String cursor, Integer limit, Integer depth) {
+        int pageSize = limit == null ? WordService.DEFAULT_PAGE_SIZE : Math.min(limit, WordService.MAX_PAGE_SIZE);
+        int levels = depth == null ? 0 : depth;
+        if (pageSize <= 0 || levels < 0) {
+            return ResponseEntity.badRequest().body("limit 必须大于 0，depth 不能小于 0");
+        }
+        String result = wordService.children(word, cursor, pageSize, levels);
+        if (result == null) {
+            HttpStatus status = wordService.isReady() ? HttpStatus.NOT_FOUND : HttpStatus.SERVICE_UNAVAILABLE;
+            return ResponseEntity.status(status).body("{\"message\":\"未找到单词: " + word + "\"}");
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(result);
+    }
+
+    /**
+     * 将当前单词树保存为快照，下次启动时直接恢复
+     * @return 保存结果
+     */
+    @PostMapping("/snapshot")
+    public ResponseEntity<String> saveSnapshot() {
         try {
-            String jsonTree = wordService.getWordTreeJson();
-            return ResponseEntity.ok(jsonTree);
+            return ResponseEntity.ok(wordService.saveSnapshot());
+        } catch (UnsupportedOperationException | IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
         } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("获取单词树时发生错误: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("保存快照时发生错误: " + e.getMessage());
         }
     }
 
-    // TODO: 根据需要实现删除和修改单词的端点
-    // @DeleteMapping("/{word}")
-    // public ResponseEntity<String> deleteWord(@PathVariable String word) { ... }
+    /**
+     * 获取词典加载进度：已加载条目数、估算总数、速度、剩余时间和是否就绪
+     * @return 加载进度
+     */
+    @GetMapping("/progress")
+    public ResponseEntity<LoadProgress> getLoadProgress() {
+        return ResponseEntity.ok(wordService.getLoadProgress());
+    }
+
+    /**
+     * 获取单词查询缓存的统计：容量、条目数、命中率、淘汰和作废次数
+     * @return 缓存统计
+     */
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(wordService.getCacheStats());
+    }
 
-    // @PutMapping("/{oldWord}")
-    // public ResponseEntity<String> updateWord(@PathVariable String oldWord, @RequestBody Map<String, String> payload) { ... }
+    /**
+     * 就绪检查，供负载均衡使用：全部单词加载完成前返回 503
+     * @return 加载进度
+     */
+    @GetMapping("/ready")
+    public ResponseEntity<LoadProgress> ready() {
+        LoadProgress progress = wordService.getLoadProgress();
+        HttpStatus status = progress.isReady() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE;
+        return ResponseEntity.status(status).body(progress);
+    }
+
+    /**
+     * 删除单词
+     * @param word 要删除的单词
+     * @return 删除结果
+     */
+    @DeleteMapping("/{word}")
+    public ResponseEntity<String> deleteWord(@PathVariable String word) {
+        try {
+            if (wordService.deleteWord(word)) {
+                return ResponseEntity.ok("单词 '" + word + "' 已删除");
+            }
+            return notModified(word);
+        } catch (UnsupportedOperationException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("删除单词时发生错误: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 修改单词的翻译或发音，也可以改名
+     * @param payload 请求体：word 为要修改的单词；meaning 或 translation 为新翻译；
+     *                可选 ushone、ukphone 为新发音，newWord 为新单词
+     * @return 修改结果
+     */
+    @PutMapping("/update")
+    public ResponseEntity<String> updateWord(@RequestBody Map<String, String> payload) {
+        String word = payload.get("word");
+        if (word == null || word.trim().isEmpty()) {
+            return ResponseEntity.badRequest().body("单词不能为空");
+        }
+        String translation = payload.containsKey("translation") ? payload.get("translation") : payload.get("meaning");
+        String newWord = payload.get("newWord");
+        if (newWord != null && newWord.trim().isEmpty()) {
+            return ResponseEntity.badRequest().body("新单词不能为空");
+        }
+        try {
+            if (wordService.updateWord(word, newWord, translation, payload.get("ushone"), payload.get("ukphone"))) {
+                return ResponseEntity.ok("单词 '" + word + "' 修改成功");
+            }
+            return notModified(word);
+        } catch (UnsupportedOperationException | IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("修改单词时发生错误: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 要删除或修改的单词不存在：词典仍在加载时返回 503，单词可能还没加载到
+     */
+    private ResponseEntity<String> notModified(String word) {
+        if (!wordService.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("词典加载中，请稍后重试");
+        }
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body("未找到单词: " + word);
+    }
 }
\ No newline at end of file
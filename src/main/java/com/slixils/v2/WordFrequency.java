@@ -0,0 +1,139 @@
+package com.slixils.v2;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 词频表：决定启动时优先加载哪些单词
+ * <p>
+ * 文件为 UTF-8 文本，每行一个单词，可带制表符分隔的次数，按次数从高到低排列；空行和 # 开头的行忽略。
+ * 既可以使用外部提供的词频表，也可以记录运行期间的查询次数，关闭时与原有次数合并写回。
+ */
+@Slf4j
+public class WordFrequency {
+
+    /** 最多记录的不同单词数，超过后不再记录新单词 */
+    private static final int MAX_TRACKED = 100_000;
+
+    private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+    /**
+     * 读取词频表中排名最靠前的单词
+     * @param file 词频表路径
+     * @param limit 最多读取的单词数
+     * @return 按排名排列的单词集合，文件不存在时为空
+     * @throws IOException 读取失败
+     */
+    public static Set<String> top(Path file, int limit) throws IOException {
+        Set<String> words = new LinkedHashSet<>();
+        if (!Files.isRegularFile(file)) {
+            return words;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while (words.size() < limit && (line = reader.readLine()) != null) {
+                String word = parseWord(line);
+                if (word != null) {
+                    words.add(word);
+                }
+            }
+        }
+        return words;
+    }
+
+    /**
+     * 记录一次查询
+     * @param word 被查询的单词
+     */
+    public void record(String word) {
+        if (word == null || word.isEmpty()) {
+            return;
+        }
+        LongAdder count = counts.get(word);
+        if (count == null) {
+            if (counts.size() >= MAX_TRACKED) {
+                return;
+            }
+            count = counts.computeIfAbsent(word, k -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    /**
+     * 将记录的查询次数与词频表原有次数合并后写回，先写临时文件再替换
+     * @param file 词频表路径
+     * @throws IOException 读写失败
+     */
+    public void save(Path file) throws IOException {
+        if (counts.isEmpty()) {
+            return;
+        }
+        // 保持原有顺序，次数相同的单词排序后相对位置不变
+        Map<String, Long> merged = new LinkedHashMap<>();
+        if (Files.isRegularFile(file)) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String word = parseWord(line);
+                    if (word != null) {
+                        merged.merge(word, parseCount(line), Long::sum);
+                    }
+                }
+            }
+        }
+        counts.forEach((word, count) -> merged.merge(word, count.sum(), Long::sum));
+
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(merged.entrySet());
+        entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Long> entry : entries) {
+                writer.write(entry.getKey());
+                writer.write('\t');
+                writer.write(Long.toString(entry.getValue()));
+                writer.newLine();
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("词频表已写入 {}：{} 个单词", file, entries.size());
+    }
+
+    private static String parseWord(String line) {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+            return null;
+        }
+        int tab = trimmed.indexOf('\t');
+        return tab < 0 ? trimmed : trimmed.substring(0, tab).trim();
+    }
+
+    /**
+     * 没有次数列的行按 1 次计算
+     */
+    private static long parseCount(String line) {
+        int tab = line.indexOf('\t');
+        if (tab < 0) {
+            return 1;
+        }
+        try {
+            return Long.parseLong(line.substring(tab + 1).trim());
+        } catch (NumberFormatException e) {
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.slixils.v2;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * 单词包含关系图的只读查询接口，WordTree 与 CompactWordTree 都实现该接口
+ */
+public interface WordGraph {
+
+    /**
+     * 获取根节点，根节点的子节点是所有没有父节点的单词
+     * @return 根节点
+     */
+    TrieNode getRoot();
+
+    /**
+     * 根据单词查找节点
+     * @param word 要查找的单词
+     * @return 找到的节点，否则返回 null
+     */
+    TrieNode findNode(String word);
+
+    /**
+     * 获取单词总数（不含根节点）
+     * @return 单词数量
+     */
+    int size();
+
+    /**
+     * 获取父子边总数，包括根节点到没有父节点的单词的边
+     * @return 边数
+     */
+    int edgeCount();
+
+    /**
+     * 获取单个单词的最大子节点数（不含根节点）
+     * @return 最大子节点数
+     */
+    int maxFanOut();
+
+    /**
+     * 获取单词的所有祖先（直接或间接被它包含的单词），按字母顺序排列
+     * @param node 单词节点
+     * @return 祖先节点列表
+     */
+    List<TrieNode> ancestors(TrieNode node);
+
+    /**
+     * 获取单词的所有后代（直接或间接包含它的单词），按字母顺序排列
+     * @param node 单词节点
+     * @return 后代节点列表
+     */
+    List<TrieNode> descendants(TrieNode node);
+
+    /**
+     * 前缀补全
+     * @param prefix 前缀
+     * @param k 最多返回的单词数，不超过 SubstringIndex.SUGGEST_LIMIT
+     * @return 以 prefix 开头的单词，短的在前，等长按字母顺序
+     */
+    List<TrieNode> suggest(String prefix, int k);
+
+    /**
+     * 获取由全部单词构建的多模式匹配自动机，用于找出文本中出现的所有单词
+     * @return 自动机
+     */
+    AhoCorasick scanner();
+
+    /**
+     * 将整个图逐个节点写入 JSON 生成器，不在内存中构建整棵 JSON 树
+     * @param gen JSON 生成器
+     * @throws IOException 写入失败
+     */
+    void writeJson(JsonGenerator gen) throws IOException;
+
+    /**
+     * 将整个图转换为格式化的 JSON 字符串
+     * @return JSON 字符串
+     */
+    default String toPrettyJson() {
+        StringWriter out = new StringWriter();
+        try (JsonGenerator gen = JsonSupport.prettyGenerator(out)) {
+            writeJson(gen);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+}
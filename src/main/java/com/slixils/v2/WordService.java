@@ -1,43 +1,274 @@
 package com.slixils.v2;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
-import java.lang.reflect.Type;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
 
 /**
  * 单词服务类，处理单词树的业务逻辑
+ * <p>
+ * 并发模型：查询读取 volatile 的 graph，tree 模式下持有 StampedLock 读锁，查询要遍历可变的列表，不使用乐观读；
+ * 实时插入先进入有界队列，由单个写入线程按批取出，每批在一次写锁内插入，查询看到的总是整批插入前或整批插入后的图；
+ * 删除和修改直接持有写锁，单次操作很短。异步加载在单独的新树上进行，不影响已发布的树，
+ * 加载期间的实时修改按顺序记录下来，加载完成后在写锁内重放并换入新树，查询不会看到加载到一半的图。
+ * compact 模式的图不可修改，查询不加锁。
+ * <p>
+ * 配置 wordtree.wal.path 后实时修改同时追加到预写日志，由刷盘线程组提交，修改落盘后才返回给调用方；
+ * 启动时在快照或词典之上重放；日志超过 wordtree.wal.compact-size 时写出新快照并清空日志。
+ * <p>
+ * 各项操作的耗时记录为 Micrometer 计时器（wordtree.*），单词数、边数、最大子节点数和加载进度注册为仪表，
+ * 通过 Actuator 的 /actuator/metrics 查看。
  */
 @Service
 @Slf4j
 public class WordService {
 
+    /** 批量查询一次最多查询的单词数 */
+    public static final int MAX_BATCH_WORDS = 10000;
+    /** 分页列出子节点时每页默认返回的节点数 */
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    /** 分页列出子节点时每页最多返回的节点数 */
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    /** 流式加载时每批解析的条目数 */
+    private static final int LOAD_BATCH_SIZE = 8192;
+    /** 解析线程与建索引线程之间最多缓存的批次数 */
+    private static final int LOAD_QUEUE_CAPACITY = 2;
+
     private WordTree wordTree = new WordTree();
+    /** 保护 wordTree 的修改：插入、删除和修改持有写锁，查询持有读锁 */
+    private final StampedLock lock = new StampedLock();
+    /** 预写日志中的修改和异步加载期间的实时修改，换入新树前按顺序重放；不在加载时为 null。由 lock 保护 */
+    private List<WriteAheadLog.Change> pendingChanges;
+    /** 词典加载进度 */
+    private final LoadProgress progress = new LoadProgress();
+    /** 查询使用的单词图：tree 模式下即 wordTree，compact 模式下为压缩得到的只读图 */
+    private volatile WordGraph graph = wordTree;
+    /** 查询后端：tree 为可修改的节点图，compact 为只读的紧凑存储 */
+    @Value("${wordtree.backend:tree}")
+    private String backend;
     private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    /** 单词集合变化后在后台重新构建多模式匹配自动机，同一时间只有一个构建任务 */
+    private final ExecutorService scanExecutor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "scanner-builder");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /** 加载词典时计算包含关系的并行度，0 表示使用 CPU 核数 */
+    @Value("${wordtree.load.parallelism:0}")
+    private int loadParallelism;
+    private ForkJoinPool loadPool;
+    /** 是否只保存直接包含关系，间接关系在查询时展开 */
+    @Value("${wordtree.transitive-reduction:false}")
+    private boolean transitiveReduction;
+    /** 词典 JSON 文件路径 */
+    @Value("${wordtree.dictionary.path:e:\\com\\slixils\\WordTree-main\\src\\main\\java\\com\\slixils\\v2\\en2zh_CN-min.json}")
+    private String dictionaryPath;
+    /** compact 模式下的词典镜像文件路径，为空时不使用镜像 */
+    @Value("${wordtree.image.path:wordtree.img}")
+    private String imagePath;
+    /** tree 模式下的快照文件路径，为空时不使用快照 */
+    @Value("${wordtree.snapshot.path:}")
+    private String snapshotPath;
+    /** 词频表路径，配置后启动时先同步加载其中排名靠前的单词；为空时按文件顺序加载前 1/4 */
+    @Value("${wordtree.frequency.path:}")
+    private String frequencyPath;
+    /** 同步阶段最多加载的高频单词数 */
+    @Value("${wordtree.frequency.limit:20000}")
+    private int frequencyLimit;
+    /** 是否记录查询次数，关闭服务时合并写回词频表 */
+    @Value("${wordtree.frequency.learn:true}")
+    private boolean frequencyLearn;
+    private final WordFrequency frequency = new WordFrequency();
+    /** queryWord 结果缓存的容量，0 表示不缓存 */
+    @Value("${wordtree.cache.size:10000}")
+    private int cacheSize;
+    private QueryCache cache = new QueryCache(0);
+    /** 预写日志文件路径，为空时不记录，实时修改只保存在内存中 */
+    @Value("${wordtree.wal.path:}")
+    private String walPath;
+    /** 预写日志超过此字节数时写出新快照并清空日志 */
+    @Value("${wordtree.wal.compact-size:67108864}")
+    private long walCompactSize = 64L << 20;
+    private WriteAheadLog wal;
+    private Thread walFlusher;
+    /** 日志过大时在这个线程中写快照压缩日志，同一时间只有一个压缩任务 */
+    private final ExecutorService walCompactor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "wal-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    /** 整棵树的只读副本及生成它的单词树和修改次数，由 frozenLock 保护，见 {@link #frozen()} */
+    private final Object frozenLock = new Object();
+    /** 保存快照时持有，避免两次保存交错写入同一个文件 */
+    private final Object snapshotLock = new Object();
+    private CompactWordTree frozen;
+    private WeakReference<WordTree> frozenSource;
+    private int frozenModCount;
+    /** 写入线程每批最多插入的单词数 */
+    @Value("${wordtree.write.batch-size:1024}")
+    private int writeBatchSize = 1024;
+    /** 等待插入的单词队列容量，队列满时 addWord 阻塞 */
+    @Value("${wordtree.write.queue-capacity:65536}")
+    private int writeQueueCapacity = 65536;
+    private BlockingQueue<PendingInsert> insertQueue;
+    /** 批量插入的写入线程，未初始化或 compact 模式下为 null，此时插入在调用线程中执行 */
+    private volatile Thread writer;
+    /** 预写日志中尚未重放的修改，从快照恢复时直接重放，从词典加载时在换入新树前重放 */
+    private List<WriteAheadLog.Change> recovered = Collections.emptyList();
+
+    private final MeterRegistry registry;
+    private final Timer insertTimer;
+    private final Timer deleteTimer;
+    private final Timer updateTimer;
+    private final Timer queryHitTimer;
+    private final Timer queryMissTimer;
+    private final Timer queryUncachedTimer;
+    private final Timer queryV1Timer;
+    private final Timer batchTimer;
+    private final Timer childrenTimer;
+    private final Timer scanTimer;
+    private final Timer suggestTimer;
+    private final Timer treeTimer;
+    private final Timer walFlushTimer;
+    private final DistributionSummary insertBatchSize;
+
+    /**
+     * 不接入监控系统时使用，指标只记录在内存中
+     */
+    public WordService() {
+        this(new SimpleMeterRegistry());
+    }
+
+    /**
+     * 构造函数，注入指标注册表
+     * @param registry 指标注册表
+     */
+    @Autowired
+    public WordService(MeterRegistry registry) {
+        this.registry = registry;
+        insertTimer = timer("wordtree.insert", "插入单词");
+        deleteTimer = timer("wordtree.delete", "删除单词");
+        updateTimer = timer("wordtree.update", "修改单词");
+        queryHitTimer = timer("wordtree.query", "查询单词", "cache", "hit");
+        queryMissTimer = timer("wordtree.query", "查询单词", "cache", "miss");
+        queryUncachedTimer = timer("wordtree.query", "查询单词", "cache", "bypass");
+        queryV1Timer = timer("wordtree.query.v1", "查询单词 (v1)");
+        batchTimer = timer("wordtree.batch", "批量查询");
+        childrenTimer = timer("wordtree.children", "分页列出子节点");
+        scanTimer = timer("wordtree.scan", "扫描文本");
+        suggestTimer = timer("wordtree.suggest", "前缀补全");
+        treeTimer = timer("wordtree.tree", "输出整个单词树");
+        walFlushTimer = timer("wordtree.wal.flush", "预写日志组提交");
+        insertBatchSize = DistributionSummary.builder("wordtree.insert.batch")
+                .description("每批插入的单词数")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+
+        Gauge.builder("wordtree.nodes", this, service -> service.graph.size())
+                .description("单词数").register(registry);
+        Gauge.builder("wordtree.edges", this, service -> service.graphStat(WordGraph::edgeCount))
+                .description("父子边数").register(registry);
+        Gauge.builder("wordtree.fanout.max", this, service -> service.graphStat(WordGraph::maxFanOut))
+                .description("单个单词的最大子节点数").register(registry);
+        Gauge.builder("wordtree.load.loaded", progress, LoadProgress::getLoaded)
+                .description("已加载的词典条目数").register(registry);
+        Gauge.builder("wordtree.load.fraction", progress, LoadProgress::getFraction)
+                .description("词典加载比例").register(registry);
+        Gauge.builder("wordtree.ready", progress, p -> p.isReady() ? 1 : 0)
+                .description("全部单词是否已可查").register(registry);
+        Gauge.builder("wordtree.wal.size", this, service -> service.wal == null ? 0 : service.wal.size())
+                .description("预写日志字节数").register(registry);
+    }
+
+    private Timer timer(String name, String description, String... tags) {
+        return Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * 读取需要遍历整个图的统计值。统计结果按版本缓存，重新统计时读取全部节点
+     */
+    private int graphStat(ToIntFunction<WordGraph> stat) {
+        WordGraph current = graph;
+        if (current instanceof CompactWordTree) {
+            return stat.applyAsInt(current);
+        }
+        long stamp = lock.readLock();
+        try {
+            return stat.applyAsInt(graph);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
     /**
      * 初始化方法，在服务启动时加载单词数据。
-     * 您需要将 en2zh_CN-min.json 文件放到项目的 resources 目录下，
-     * 或者修改下面的文件路径为绝对路径。
+     * 词典文件路径通过 wordtree.dictionary.path 配置；
+     * compact 模式下优先映射有效的词典镜像，无需重新解析 JSON。
      */
     @PostConstruct
     public void initialize() {
-        // TODO: 将 "en2zh_CN-min.json" 文件路径配置化或确保其在类路径中
-        // String filePath = "src/main/resources/en2zh_CN-min.json"; // 示例路径
-        String filePath = "e:\\com\\slixils\\WordTree-main\\src\\main\\java\\com\\slixils\\v2\\en2zh_CN-min.json"; // 使用用户提供的绝对路径
+        cache = new QueryCache(cacheSize);
+        wordTree = new WordTree(transitiveReduction);
+        graph = wordTree;
+        loadPool = new ForkJoinPool(loadParallelism > 0 ? loadParallelism : Runtime.getRuntime().availableProcessors());
+        String filePath = dictionaryPath;
         try {
+            openWal();
+            startWriter();
+            if (isCompact() && openImage()) {
+                progress.complete("image", graph.size());
+                return;
+            }
+            if (!isCompact() && restoreSnapshot()) {
+                progress.complete("snapshot", graph.size());
+                return;
+            }
 //            log.info("开始加载单词数据从: {}", filePath);
             extractAndInsert(filePath);
 //            log.info("单词数据加载完成。");
@@ -51,81 +282,542 @@ public class WordService {
 //                }
 //            }
         } catch (Exception e) {
+            progress.fail(e.getMessage());
             log.error("初始化加载单词数据失败: ", e);
         }
     }
 
     /**
-     * 从 JSON 文件中提取单词并插入到单词树中
+     * 从 JSON 文件中提取单词并插入到单词树中。
+     * 文件按条目流式解析；配置了词频表时先扫描一遍文件同步加载高频单词，
+     * 否则同步加载前约 1/4（按字节计）。其余单词异步加载。
+     * 包含关系与插入顺序无关，加载完成后按字母顺序重新编号，最终的图与加载顺序无关。
      * @param filePath JSON 文件路径
      */
     public void extractAndInsert(String filePath) {
-        Gson gson = new Gson();
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            Type wordListType = new TypeToken<List<Word>>() {
-            }.getType();
-            List<Word> words = gson.fromJson(br, wordListType);
-            int totalSize = words.size();
-            int quarterSize = totalSize / 4;
-            List<Word> part1 = words.subList(0, quarterSize);
-            List<Word> part2 = words.subList(quarterSize, totalSize);
-            log.info("开始同步加载前 1/4 单词，共 {} 个", part1.size());
-            extractAndInsertPartial(part1);
-            // 异步加载剩余3/4
-            log.info("开始异步加载剩余 3/4 单词，共 {} 个", part2.size());
-            executor.submit(() -> {
-                try {
-                    extractAndInsertPartial(part2);
-                    log.info("异步加载完成");
-                } catch (Exception e) {
-                    log.error("异步加载单词失败", e);
-                }
-            });
-
-        } catch (FileNotFoundException e) {
-            throw new RuntimeException(e);
+        Set<String> hot = readHotWords();
+        Predicate<Word> rest = hot.isEmpty() ? word -> true : word -> !hot.contains(word.getName());
+        DictionaryReader reader;
+        try {
+            reader = new DictionaryReader(Paths.get(filePath));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-    }
-
-    private void extractAndInsertPartial(List<Word> words) {
-        String translation;
-        for (Word word : words) {
-            String name = word.getName();
-            if (name == null || word.getTrans() == null) {
-                continue;
+        progress.start("dictionary", reader.length());
+        try {
+            int loaded;
+            if (hot.isEmpty()) {
+                log.info("开始同步加载前约 1/4 单词");
+                loaded = load(reader, wordTree, reader.length() / 4, rest);
+            } else {
+                log.info("开始同步加载词频表中的 {} 个高频单词", hot.size());
+                try (DictionaryReader first = new DictionaryReader(Paths.get(filePath))) {
+                    loaded = load(first, wordTree, Long.MAX_VALUE, word -> hot.contains(word.getName()));
+                }
+                // 第二遍从头读取其余单词
+                progress.start("dictionary", reader.length());
             }
-
+            publish();
+            log.info("同步加载完成，共 {} 个单词", loaded);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            closeQuietly(reader);
+            throw new RuntimeException(e);
+        }
+        // 异步加载剩余部分
+        log.info("开始异步加载剩余单词");
+        if (!isCompact()) {
+            // 预写日志中的修改发生在本次启动之前，排在此后的实时修改前面，一起在换入新树前重放。
+            // 发布后、fork 前的实时修改既在新树的起点中又会重放一次，每条修改重复执行结果不变
+            long stamp = lock.writeLock();
+            pendingChanges = new ArrayList<>(recovered);
+            recovered = Collections.emptyList();
+            lock.unlockWrite(stamp);
+        }
+        executor.submit(() -> {
             try {
-                if (word.getTrans().isJsonArray()) {
-                    if (word.getTrans().getAsJsonArray().size() > 0) {
-                        translation = word.getTrans().getAsJsonArray().get(0).getAsString();
-                    } else {
-                        translation = "无翻译";
-                    }
-                } else if (!word.getTrans().isJsonNull()) {
-                    translation = word.getTrans().getAsString();
+                if (isCompact()) {
+                    // compact 模式查询读取的是压缩后的图，节点图可以直接继续构建
+                    int loaded = load(reader, wordTree, Long.MAX_VALUE, rest);
+                    publish();
+                    // 紧凑存储已包含全部数据，释放节点图
+                    wordTree = null;
+                    writeImage((CompactWordTree) graph);
+                    progress.complete("dictionary", graph.size());
+                    log.info("异步加载完成，共 {} 个单词", loaded);
                 } else {
-                    translation = "无翻译";
+                    WordTree next = fork();
+                    int loaded = load(reader, next, Long.MAX_VALUE, rest);
+                    swap(next);
+                    progress.complete("dictionary", graph.size());
+                    log.info("异步加载完成，共 {} 个单词", loaded);
                 }
             } catch (Exception e) {
-                translation = "无翻译";
-                log.error("解析翻译时出错 for word '{}': {}", name, e.getMessage());
+                progress.fail(e.getMessage());
+                log.error("异步加载单词失败", e);
+                long stamp = lock.writeLock();
+                pendingChanges = null;
+                lock.unlockWrite(stamp);
+            } finally {
+                closeQuietly(reader);
             }
+        });
+    }
 
-            String usphone = word.getUsphone();
-            String ukphone = word.getUkphone();
+    /**
+     * 流水线加载：解析线程逐条解析并按批放入有界队列，当前线程取出批次建立索引，解析与建索引同时进行。
+     * 读取位置超过 limit 字节后在批次边界停止，队列容量限制了同时驻留内存的条目数。
+     * @param reader 词典读取器
+     * @param target 加入单词的树
+     * @param limit 停止读取的字节位置
+     * @param filter 只加载满足条件的条目
+     * @return 本次加载的条目数
+     */
+    private int load(DictionaryReader reader, WordTree target, long limit, Predicate<Word> filter)
+            throws IOException, InterruptedException {
+        BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(LOAD_QUEUE_CAPACITY);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread parser = new Thread(() -> {
+            try {
+                while (reader.position() < limit) {
+                    List<Word> batch = reader.nextBatch(LOAD_BATCH_SIZE);
+                    if (batch.isEmpty()) {
+                        break;
+                    }
+                    batch.removeIf(filter.negate());
+                    if (!batch.isEmpty()) {
+                        queue.put(new Batch(batch, reader.position()));
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                failure.set(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                // 空批次表示结束，解析失败时也必须放入，否则建索引线程一直等待
+                try {
+                    queue.put(new Batch(Collections.emptyList(), reader.position()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "dictionary-parser");
+        parser.setDaemon(true);
+        parser.start();
+
+        int count = 0;
+        try {
+            Batch batch;
+            while (!(batch = queue.take()).words.isEmpty()) {
+                target.bulkBuild(batch.words, loadPool);
+                count += batch.words.size();
+                progress.advance(batch.words.size(), batch.position);
+            }
+        } finally {
+            parser.interrupt();
+            parser.join();
+        }
+        Exception e = failure.get();
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        }
+        if (e != null) {
+            throw (RuntimeException) e;
+        }
+        return count;
+    }
+
+    /**
+     * 解析线程交给建索引线程的一批条目
+     */
+    private static class Batch {
+        final List<Word> words;
+        /** 解析完这一批时的读取位置 */
+        final long position;
+
+        Batch(List<Word> words, long position) {
+            this.words = words;
+            this.position = position;
+        }
+    }
+
+    /**
+     * 以已发布的单词树为起点创建一棵新树供异步加载使用
+     * @return 包含当前所有单词的新树
+     */
+    private WordTree fork() {
+        List<Word> words;
+        long stamp = lock.readLock();
+        try {
+            words = new ArrayList<>(wordTree.size());
+            for (TrieNode node : wordTree.nodes()) {
+                words.add(toWord(node.word, node.translation, node.ushone, node.ukphone));
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        WordTree next = new WordTree(transitiveReduction);
+        next.bulkBuild(words, loadPool);
+        return next;
+    }
 
+    /**
+     * 按顺序重放预写日志和加载期间的实时修改，然后换入新树。实时修改的次数很少，逐条重放；
+     * 重放按 upsert 处理，同一单词以实时修改的结果为准，而不是词典中的版本
+     * @param next 加载完成的新树
+     */
+    private void swap(WordTree next) {
+        long stamp = lock.writeLock();
+        try {
+            replay(pendingChanges, next);
+            next.renumber();
+            pendingChanges = null;
+            wordTree = next;
+            graph = next;
+            next.setChangeListener(cache);
+            cache.reset();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 按顺序重放修改，见 {@link WriteAheadLog.Change#replay}
+     * @param changes 修改
+     * @param tree 单词树
+     */
+    private static void replay(List<WriteAheadLog.Change> changes, WordTree tree) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        log.info("重放 {} 次修改", changes.size());
+        for (WriteAheadLog.Change change : changes) {
             try {
-                log.info("插入单词：{},翻译：{}",name,translation);
-                wordTree.insert(name, translation, usphone, ukphone);
+                change.replay(tree);
             } catch (RuntimeException e) {
-                log.warn("插入单词 '{}' 时出现重复: {}", name, e.getMessage());
+                // 跳过这一条，不影响其余修改和加载结果
+                log.warn("重放修改失败: {}", e.getMessage());
             }
         }
     }
 
+    private static Word toWord(String name, String translation, String usphone, String ukphone) {
+        Word word = new Word();
+        word.setName(name);
+        word.setTranslation(translation);
+        word.setUsphone(usphone);
+        word.setUkphone(ukphone);
+        return word;
+    }
+
+    /**
+     * 在当前单词图上执行只读查询。
+     * tree 模式下持有读锁：查询会递归遍历节点的 ArrayList，与写入同时进行时可能读到修改到一半的列表，
+     * 出现异常、栈溢出甚至死循环，乐观读事后校验也来不及，因此不使用乐观读
+     * @param query 查询
+     * @return 查询结果
+     */
+    private <T> T read(Function<WordGraph, T> query) {
+        WordGraph current = graph;
+        if (current instanceof CompactWordTree) {
+            return query.apply(current);
+        }
+        long stamp = lock.readLock();
+        try {
+            return query.apply(graph);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 读取词频表中排名靠前的单词
+     * @return 高频单词集合，未配置或读取失败时为空
+     */
+    private Set<String> readHotWords() {
+        if (frequencyPath == null || frequencyPath.isEmpty()) {
+            return Collections.emptySet();
+        }
+        try {
+            return WordFrequency.top(Paths.get(frequencyPath), frequencyLimit);
+        } catch (IOException e) {
+            log.warn("读取词频表失败，将按文件顺序加载: {}", e.getMessage());
+            return Collections.emptySet();
+        }
+    }
+
+    /**
+     * 关闭服务：停止异步加载线程和建索引线程池，插入已排队的单词，写入预写日志中剩余的修改，再写回词频表
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        scanExecutor.shutdownNow();
+        if (loadPool != null) {
+            loadPool.shutdownNow();
+        }
+        stopWriter();
+        closeWal();
+        saveFrequency();
+    }
+
+    /**
+     * 打开预写日志，读出其中的修改留待重放，并启动刷盘线程。compact 模式为只读，不使用预写日志。
+     * 日志靠写快照压缩，未配置快照路径时使用日志文件旁的 .snapshot 文件
+     * @throws IOException 日志文件无法读取
+     */
+    private void openWal() throws IOException {
+        if (walPath == null || walPath.isEmpty() || isCompact()) {
+            return;
+        }
+        if (snapshotPath == null || snapshotPath.isEmpty()) {
+            snapshotPath = walPath + ".snapshot";
+            log.info("未配置 wordtree.snapshot.path，预写日志压缩为快照 {}", snapshotPath);
+        }
+        wal = WriteAheadLog.open(Paths.get(walPath));
+        recovered = wal.recovered();
+        Thread thread = new Thread(this::flushLoop, "wal-flusher");
+        thread.setDaemon(true);
+        thread.start();
+        walFlusher = thread;
+    }
+
+    /**
+     * 刷盘线程：有记录就立即组提交，fsync 期间到达的记录攒成下一组。日志过大时顺带压缩为快照
+     */
+    private void flushLoop() {
+        try {
+            while (wal.awaitPending()) {
+                flushWal();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 组提交一次预写日志。异常只记录，这一组的调用方收到异常，不影响下一组
+     */
+    private void flushWal() {
+        try {
+            long start = System.nanoTime();
+            if (wal.flush() > 0) {
+                walFlushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            if (wal.size() >= walCompactSize && isReady() && compacting.compareAndSet(false, true)) {
+                log.info("预写日志已达 {} 字节，压缩为快照", wal.size());
+                // 写快照耗时较长，交给压缩线程，刷盘线程继续组提交
+                walCompactor.execute(this::compactWal);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("写入预写日志失败", e);
+        }
+    }
+
+    /**
+     * 压缩线程：写出快照并截掉预写日志中快照已包含的部分
+     */
+    private void compactWal() {
+        try {
+            saveSnapshot();
+        } catch (IOException | RuntimeException e) {
+            log.error("压缩预写日志失败", e);
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    /**
+     * 停止接受追加，等压缩线程和刷盘线程结束后关闭日志
+     */
+    private void closeWal() {
+        if (wal == null) {
+            return;
+        }
+        // 不中断压缩线程，中断会关闭它正在使用的文件
+        walCompactor.shutdown();
+        wal.shutdown();
+        try {
+            walCompactor.awaitTermination(1, TimeUnit.MINUTES);
+            walFlusher.join();
+            wal.close();
+        } catch (IOException e) {
+            log.error("关闭预写日志失败", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 将记录的查询次数写回词频表
+     */
+    public void saveFrequency() {
+        if (!frequencyLearn || frequencyPath == null || frequencyPath.isEmpty()) {
+            return;
+        }
+        try {
+            frequency.save(Paths.get(frequencyPath));
+        } catch (IOException e) {
+            log.error("写入词频表失败", e);
+        }
+    }
+
+    private static void closeQuietly(DictionaryReader reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            log.warn("关闭词典文件失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 获取词典加载进度
+     * @return 加载进度
+     */
+    public LoadProgress getLoadProgress() {
+        return progress;
+    }
+
+    /**
+     * 全部单词是否已加载完成
+     * @return 已就绪时返回 true
+     */
+    public boolean isReady() {
+        return progress.isReady();
+    }
+
+    /**
+     * 获取 queryWord 结果缓存的统计
+     * @return 缓存统计
+     */
+    public Map<String, Object> getCacheStats() {
+        return cache.stats();
+    }
+
+    /**
+     * 是否使用紧凑存储后端
+     * @return compact 模式返回 true
+     */
+    private boolean isCompact() {
+        return "compact".equalsIgnoreCase(backend);
+    }
+
+    /**
+     * 尝试映射词典镜像，镜像有效时直接作为查询使用的单词图
+     * @return 镜像有效并已启用时返回 true
+     */
+    private boolean openImage() {
+        if (imagePath == null || imagePath.isEmpty()) {
+            return false;
+        }
+        try {
+            CompactWordTree image = DictionaryImage.open(Paths.get(imagePath), Paths.get(dictionaryPath), transitiveReduction);
+            if (image == null) {
+                return false;
+            }
+            graph = image;
+            wordTree = null;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("读取词典镜像失败，将从 JSON 重新加载: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 将加载完成的紧凑存储写入词典镜像，下次启动直接映射
+     * @param compact 紧凑单词图
+     */
+    private void writeImage(CompactWordTree compact) {
+        if (imagePath == null || imagePath.isEmpty()) {
+            return;
+        }
+        try {
+            DictionaryImage.write(compact, Paths.get(imagePath), Paths.get(dictionaryPath));
+        } catch (IOException e) {
+            log.error("写入词典镜像失败", e);
+        }
+    }
+
+    /**
+     * 快照文件存在时从快照恢复单词树
+     * @return 恢复成功时返回 true
+     */
+    private boolean restoreSnapshot() {
+        if (snapshotPath == null || snapshotPath.isEmpty() || !Files.isRegularFile(Paths.get(snapshotPath))) {
+            return false;
+        }
+        try {
+            WordTree restored = WordTreeSnapshot.read(Paths.get(snapshotPath));
+            if (restored.isTransitiveReduction() != transitiveReduction) {
+                log.info("快照的传递规约设置与当前配置不一致，将从 JSON 重新加载");
+                return false;
+            }
+            replay(recovered, restored);
+            recovered = Collections.emptyList();
+            wordTree = restored;
+            publish();
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("读取快照失败，将从 JSON 重新加载: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 将当前单词树保存为快照，预写日志中的修改都已包含在快照中，随后清空日志
+     * @return 保存结果描述
+     * @throws IOException 写入失败
+     * @throws IllegalStateException 未配置快照路径，或词典尚未加载完成
+     */
+    public String saveSnapshot() throws IOException {
+        if (isCompact()) {
+            throw new UnsupportedOperationException("紧凑存储模式不支持快照，请使用词典镜像");
+        }
+        if (snapshotPath == null || snapshotPath.isEmpty()) {
+            throw new IllegalStateException("未配置 wordtree.snapshot.path");
+        }
+        if (!isReady()) {
+            // 此时的树只有部分单词，预写日志中的修改也还没有重放
+            throw new IllegalStateException("词典尚未加载完成，暂不能保存快照");
+        }
+        // 同一时间只写一份快照，日志按各自的位置压缩
+        synchronized (snapshotLock) {
+            CompactWordTree copy;
+            long mark;
+            synchronized (frozenLock) {
+                // 读锁阻止写入，副本与日志位置对应同一时刻
+                long stamp = lock.readLock();
+                try {
+                    copy = frozen(wordTree);
+                    mark = wal == null ? 0 : wal.position();
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            // 写快照和压缩日志都不持有读锁，期间的修改照常进行并留在日志中
+            WordTreeSnapshot.write(copy, Paths.get(snapshotPath));
+            if (wal != null) {
+                wal.compact(mark);
+            }
+            return "快照已保存: " + snapshotPath + "，共 " + copy.size() + " 个单词";
+        }
+    }
+
+    /**
+     * 发布加载结果供查询使用，compact 模式下将节点图压缩为紧凑存储
+     */
+    private void publish() {
+        if (isCompact()) {
+            CompactWordTree compact = CompactWordTree.of(wordTree);
+            log.info("紧凑存储已生成：{} 个单词，{} 条边", compact.size(), compact.edgeCount());
+            graph = compact;
+        } else {
+            graph = wordTree;
+            wordTree.setChangeListener(cache);
+        }
+        cache.reset();
+    }
+
     /**
      * 插入一个新单词
      * @param word 单词
@@ -134,44 +826,475 @@ public class WordService {
      * @param ukphone 英式发音
      */
     public void insertWord(String word, String translation, String ushone, String ukphone) {
+        if (isCompact()) {
+            throw new UnsupportedOperationException("紧凑存储模式为只读，不支持添加单词");
+        }
+        if (word == null || word.isEmpty()) {
+            // 与其他单词同批插入，提前拒绝，避免整批失败
+            throw new IllegalArgumentException("单词不能为空");
+        }
+        Timer.Sample sample = Timer.start(registry);
+        PendingInsert request = new PendingInsert(WriteAheadLog.Change.insert(word, translation, ushone, ukphone));
         try {
-            wordTree.insert(word, translation, ushone, ukphone);
-            log.info("单词 '{}' 已插入.", word);
+            long stamp;
+            if (writer == null) {
+                insertBatch(Collections.singletonList(request));
+            } else if (insertQueue.isEmpty() && (stamp = lock.tryWriteLock()) != 0) {
+                // 没有其他写入时直接插入，省去两次线程切换；有竞争时才排队交给写入线程合并成批
+                insertBatch(Collections.singletonList(request), stamp);
+            } else {
+                insertQueue.put(request);
+                if (writer == null) {
+                    // 放入队列时写入线程恰好停止，自己处理剩余的插入
+                    drainInserts();
+                }
+            }
+            // 等写入线程插入后再返回，返回后即可查到
+            request.await();
+            // 插入次数和耗时由 wordtree.insert 统计，不再逐条打印
+            log.debug("单词 '{}' 已插入.", word);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待插入单词时被中断: " + word);
         } catch (RuntimeException e) {
             log.error("插入单词 '{}' 失败: {}", word, e.getMessage());
             throw e; // 可以选择向上抛出异常，让 Controller 处理
+        } finally {
+            sample.stop(insertTimer);
+        }
+    }
+
+    /**
+     * 排队等待写入线程插入的单词
+     */
+    private static class PendingInsert {
+        final WriteAheadLog.Change change;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        /** 实际插入并写入预写日志时为落盘的 future，在 done 完成前设置 */
+        CompletableFuture<Void> durable;
+
+        PendingInsert(WriteAheadLog.Change change) {
+            this.change = change;
+        }
+
+        /**
+         * 等待插入完成并落盘，插入失败时抛出原来的异常
+         */
+        void await() {
+            try {
+                done.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+            awaitDurable(durable);
+        }
+    }
+
+    /**
+     * 启动写入线程。compact 模式为只读，不需要
+     */
+    private void startWriter() {
+        if (isCompact()) {
+            return;
+        }
+        insertQueue = new ArrayBlockingQueue<>(writeQueueCapacity);
+        Thread thread = new Thread(this::writeLoop, "word-writer");
+        thread.setDaemon(true);
+        thread.start();
+        writer = thread;
+    }
+
+    /**
+     * 写入线程：取出队列中已有的插入，最多 writeBatchSize 个一批。
+     * 空闲时第一个插入立即处理，并发插入多时自然攒成大批
+     */
+    private void writeLoop() {
+        List<PendingInsert> batch = new ArrayList<>();
+        try {
+            while (true) {
+                batch.add(insertQueue.take());
+                insertQueue.drainTo(batch, writeBatchSize - 1);
+                insertBatch(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // 关闭服务：插入已排队的单词后退出
+            drainInserts();
+        }
+    }
+
+    private void drainInserts() {
+        List<PendingInsert> batch = new ArrayList<>();
+        insertQueue.drainTo(batch);
+        if (!batch.isEmpty()) {
+            insertBatch(batch);
+        }
+    }
+
+    private void stopWriter() {
+        Thread thread = writer;
+        if (thread == null) {
+            return;
+        }
+        // 此后的插入在调用线程中执行
+        writer = null;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 在一次写锁内插入一批单词：一遍查索引、一次建立包含关系，查询只会看到整批插入前或插入后的图。
+     * 已存在的单词跳过，与逐个插入相同；实际插入的单词按批内顺序记录
+     * @param batch 排队的插入
+     */
+    private void insertBatch(List<PendingInsert> batch) {
+        insertBatch(batch, lock.writeLock());
+    }
+
+    /**
+     * @param batch 排队的插入
+     * @param stamp 已持有的写锁，插入后释放
+     */
+    private void insertBatch(List<PendingInsert> batch, long stamp) {
+        List<Word> words = new ArrayList<>(batch.size());
+        for (PendingInsert request : batch) {
+            WriteAheadLog.Change change = request.change;
+            words.add(toWord(change.word, change.translation, change.ushone, change.ukphone));
+        }
+        try {
+            List<TrieNode> added = wordTree.insertAll(words);
+            // added 是 batch 中首次出现且原先不存在的单词，顺序一致
+            int next = 0;
+            for (PendingInsert request : batch) {
+                if (next < added.size() && added.get(next).word.equals(request.change.word)) {
+                    request.durable = record(request.change);
+                    next++;
+                }
+            }
+        } catch (RuntimeException e) {
+            for (PendingInsert request : batch) {
+                request.done.completeExceptionally(e);
+            }
+            return;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        insertBatchSize.record(batch.size());
+        for (PendingInsert request : batch) {
+            request.done.complete(null);
+        }
+    }
+
+    /**
+     * 删除单词，只修复与它相连的边
+     * @param word 要删除的单词
+     * @return 单词存在并已删除时返回 true
+     */
+    public boolean deleteWord(String word) {
+        if (isCompact()) {
+            throw new UnsupportedOperationException("紧凑存储模式为只读，不支持删除单词");
+        }
+        return modify(deleteTimer, WriteAheadLog.Change.delete(word));
+    }
+
+    /**
+     * 修改单词。只改翻译或发音时包含关系不变；改名相当于删除旧单词再插入新单词
+     * @param word 要修改的单词
+     * @param newWord 新单词，为 null 或与原单词相同时不改名
+     * @param translation 新翻译，为 null 时不修改
+     * @param ushone 新美式发音，为 null 时不修改
+     * @param ukphone 新英式发音，为 null 时不修改
+     * @return 单词存在并已修改时返回 true
+     * @throws IllegalStateException 新单词已经存在
+     */
+    public boolean updateWord(String word, String newWord, String translation, String ushone, String ukphone) {
+        if (isCompact()) {
+            throw new UnsupportedOperationException("紧凑存储模式为只读，不支持修改单词");
+        }
+        return modify(updateTimer, WriteAheadLog.Change.update(word, newWord, translation, ushone, ukphone));
+    }
+
+    /**
+     * 在写锁内修改单词树，修改成功时记录下来
+     * @param timer 记录耗时的计时器
+     * @param change 修改操作
+     * @return 是否修改成功
+     */
+    private boolean modify(Timer timer, WriteAheadLog.Change change) {
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            CompletableFuture<Void> durable;
+            long stamp = lock.writeLock();
+            try {
+                if (!change.apply(wordTree)) {
+                    return false;
+                }
+                durable = record(change);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            // 释放写锁后再等待落盘，等待期间的其他修改进入同一组
+            awaitDurable(durable);
+            return true;
+        } finally {
+            sample.stop(timer);
+        }
+    }
+
+    /**
+     * 记录一次成功的修改：加载期间记入 pendingChanges，换入新树前重放；配置了预写日志时追加到日志。
+     * 调用方持有写锁，记录顺序与修改顺序一致
+     * @param change 修改
+     * @return 修改落盘后完成的 future，未配置预写日志时为 null
+     */
+    private CompletableFuture<Void> record(WriteAheadLog.Change change) {
+        if (pendingChanges != null) {
+            pendingChanges.add(change);
+        }
+        return wal == null ? null : wal.append(change);
+    }
+
+    /**
+     * 等待修改写入预写日志
+     * @param durable {@link #record} 返回的 future，为 null 时直接返回
+     * @throws IllegalStateException 写入预写日志失败，修改已在内存中生效但重启后会丢失
+     */
+    private static void awaitDurable(CompletableFuture<Void> durable) {
+        if (durable == null) {
+            return;
+        }
+        try {
+            durable.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("修改已生效，但写入预写日志失败: " + e.getCause().getMessage(), e.getCause());
         }
     }
 
     /**
      * 查询单词信息 (父节点和子节点)
      * @param word 要查询的单词
-     * @return 查询结果的 JSON 字符串，如果未找到则返回提示信息
+     * @return 查询结果的 JSON 字符串，如果未找到则返回 null
      */
     public String queryWord(String word) {
-        List<String> parents = new ArrayList<>();
-        TrieNode node = wordTree.findNodev1(word, wordTree.getRoot(), parents);
-        if (node == null) {
-            return "{\"message\":\"未找到单词: " + word + "\"}";
+        Timer.Sample sample = Timer.start(registry);
+        recordQuery(word);
+        String cached = cache.get(word);
+        if (cached != null) {
+            sample.stop(queryHitTimer);
+            return cached;
+        }
+        try {
+            long epoch = cache.epoch();
+            String jsonString = read(current -> {
+                TrieNode node = current.findNode(word);
+                return node == null ? null : node.toJsonString(true, true);
+            });
+            if (jsonString == null) {
+                // 未找到的结果不缓存，单词随时可能被加入
+                return null;
+            }
+            cache.put(word, jsonString, epoch);
+            return jsonString;
+        } finally {
+            sample.stop(queryMissTimer);
         }
+    }
 
-        String jsonString = node.toJsonString(true, true);
-        return jsonString;
+    /**
+     * 查询单词信息，父节点和子节点各自最多展开 depth 层。结果不缓存
+     * @param word 要查询的单词
+     * @param depth 展开层数，0 表示只返回单词本身和父子节点数
+     * @return 查询结果的 JSON 字符串，如果未找到则返回 null
+     */
+    public String queryWord(String word, int depth) {
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            recordQuery(word);
+            String jsonString = read(current -> {
+                TrieNode node = current.findNode(word);
+                return node == null ? null : node.toJsonString(true, true, depth);
+            });
+            return jsonString;
+        } finally {
+            sample.stop(queryUncachedTimer);
+        }
+    }
+
+    /**
+     * 分页列出单词的子节点（包含它的单词），按字母顺序，用于逐层展开单词树
+     * @param word 父节点单词，null 表示根节点，即列出所有没有父节点的单词
+     * @param cursor 上一页的 nextCursor，null 表示第一页
+     * @param limit 本页最多返回的节点数
+     * @param depth 每个子节点再向下展开的层数
+     * @return JSON 字符串：word、total（子节点总数）、items 和 nextCursor（没有下一页时为 null）；单词不存在时返回 null
+     */
+    public String children(String word, String cursor, int limit, int depth) {
+        return childrenTimer.record(() -> read(current -> {
+            TrieNode parent = word == null ? current.getRoot() : current.findNode(word);
+            return parent == null ? null : childrenPage(parent, cursor, limit, depth);
+        }));
+    }
+
+    private static String childrenPage(TrieNode parent, String cursor, int limit, int depth) {
+        List<TrieNode> children = parent.children;
+        int from = 0;
+        if (cursor != null) {
+            // 游标是单词而不是下标或编号，两页之间插入单词或重新编号都不影响翻页
+            int i = TrieNode.indexOf(children, cursor);
+            from = i >= 0 ? i + 1 : -i - 1;
+        }
+        int to = Math.min(children.size(), from + limit);
+        StringWriter out = new StringWriter();
+        try (JsonGenerator gen = JsonSupport.generator(out)) {
+            gen.writeStartObject();
+            gen.writeStringField("word", parent.word);
+            gen.writeNumberField("total", children.size());
+            gen.writeArrayFieldStart("items");
+            for (int i = from; i < to; i++) {
+                children.get(i).writeJson(gen, false, true, depth);
+            }
+            gen.writeEndArray();
+            gen.writeStringField("nextCursor", to < children.size() ? children.get(to - 1).word : null);
+            gen.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
     }
     
+    private void recordQuery(String word) {
+        if (frequencyLearn) {
+            frequency.record(word);
+        }
+    }
+
+    /**
+     * 批量查询：所有单词在同一次读取中查完，结果一次序列化
+     * @param words 要查询的单词，重复的只查一次
+     * @param relations 是否包含父节点和子节点
+     * @return JSON 字符串：results 为单词到查询结果的映射（未找到为 null），missing 为未找到的单词，ready 表示词典是否已全部加载
+     * @throws JsonProcessingException 序列化失败
+     */
+    public String batchQuery(List<String> words, boolean relations) throws JsonProcessingException {
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            return batchQuery(new LinkedHashSet<>(words), relations);
+        } finally {
+            sample.stop(batchTimer);
+        }
+    }
+
+    private String batchQuery(Set<String> unique, boolean relations) throws JsonProcessingException {
+        unique.remove(null);
+        for (String word : unique) {
+            recordQuery(word);
+        }
+        Map<String, Object> results = read(current -> {
+            Map<String, Object> found = new LinkedHashMap<>();
+            for (String word : unique) {
+                TrieNode node = current.findNode(word);
+                found.put(word, node == null ? null : node.toJson(relations, relations));
+            }
+            return found;
+        });
+        List<String> missing = new ArrayList<>();
+        results.forEach((word, result) -> {
+            if (result == null) {
+                missing.add(word);
+            }
+        });
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("results", results);
+        response.put("missing", missing);
+        response.put("ready", isReady());
+        return JsonSupport.MAPPER.writeValueAsString(response);
+    }
+
+    /**
+     * 找出文本中出现的所有词典单词，一次线性扫描。
+     * 单词集合变化后自动机在后台重新构建，构建完成前的结果不含最近的修改
+     * @param text 文本
+     * @return 匹配结果，按结束位置排列
+     */
+    public List<AhoCorasick.Match> scan(String text) {
+        return scanTimer.record(() -> scanWith(text));
+    }
+
+    private List<AhoCorasick.Match> scanWith(String text) {
+        WordGraph current = graph;
+        if (current instanceof CompactWordTree) {
+            return current.scanner().scan(text);
+        }
+        // 读锁内只复制节点列表，自动机在锁外构建，修改不必等待
+        AhoCorasick scanner;
+        Runnable rebuild = null;
+        long stamp = lock.readLock();
+        try {
+            current = graph;
+            if (current instanceof WordTree) {
+                rebuild = ((WordTree) current).rebuildScanner();
+                scanner = ((WordTree) current).currentScanner();
+            } else {
+                scanner = current.scanner();
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        if (rebuild != null) {
+            if (scanner == null) {
+                // 第一次扫描没有可用的自动机，在当前线程构建
+                rebuild.run();
+                scanner = ((WordTree) current).currentScanner();
+            } else {
+                // 新自动机在后台构建，在此之前继续使用旧的，结果可能不含最近的修改
+                scanExecutor.execute(rebuild);
+            }
+        }
+        // 自动机构建后不再修改，扫描不需要加锁
+        return scanner.scan(text);
+    }
+
+    /**
+     * 前缀补全
+     * @param prefix 前缀
+     * @param k 最多返回的单词数
+     * @return 以 prefix 开头的单词及翻译，短的在前
+     */
+    public List<WordQueryResult.SimpleNode> suggest(String prefix, int k) {
+        return suggestTimer.record(() -> read(current -> {
+            List<WordQueryResult.SimpleNode> result = new ArrayList<>();
+            for (TrieNode node : current.suggest(prefix, k)) {
+                result.add(new WordQueryResult.SimpleNode(node.getWord(), node.getTranslation(), node.getUshone(), node.getUkphone()));
+            }
+            return result;
+        }));
+    }
+
     /**
-     * 递归收集所有子节点信息
+     * 递归收集所有子节点信息，共享的子节点只收集一次
      * @param node 当前节点
      * @param result 结果列表
      * @param level 当前层级
+     * @param visited 已收集的节点编号
      */
-    private void collectChildren(TrieNode node, List<WordQueryResult.SimpleNode> result, int level) {
+    private void collectChildren(TrieNode node, List<WordQueryResult.SimpleNode> result, int level, BitSet visited) {
         if (node.getChildren().isEmpty()) {
             return;
         }
         for (TrieNode child : node.getChildren()) {
+            if (visited.get(child.getId())) {
+                continue;
+            }
+            visited.set(child.getId());
             result.add(new WordQueryResult.SimpleNode(child.getWord(), child.getTranslation(), level));
-            collectChildren(child, result, level + 1);
+            collectChildren(child, result, level + 1, visited);
         }
     }
 
@@ -181,9 +1304,20 @@ public class WordService {
      * @return 查询结果的字符串描述，如果未找到则返回提示信息
      */
     public String queryWordV1(String word) {
+        recordQuery(word);
         // WordTree.queryv1 方法是打印到控制台，需要修改为返回数据结构或字符串
         // 这里暂时模拟返回，实际应修改 WordTree.queryv1
-        TrieNode node = wordTree.findNode(word); // 使用内部的 findNode 方法
+        return queryV1Timer.record(() -> read(current -> describe(current, word)));
+    }
+
+    /**
+     * 生成单词及其父子节点的文字描述
+     * @param current 单词图
+     * @param word 要查询的单词
+     * @return 描述文字，如果未找到则返回提示信息
+     */
+    private String describe(WordGraph current, String word) {
+        TrieNode node = current.findNode(word); // 使用内部的 findNode 方法
         if (node == null) {
             return "未找到单词: " + word;
         }
@@ -196,19 +1330,21 @@ public class WordService {
         sb.append("英式发音: ").append(node.getUkphone()).append("\n");
 
         sb.append("父节点: \n");
-        if (node.getParents().isEmpty()) {
+        List<TrieNode> ancestors = current.ancestors(node);
+        if (ancestors.isEmpty()) {
             sb.append("    无\n");
         } else {
-            for (TrieNode parent : node.getParents()) {
+            for (TrieNode parent : ancestors) {
                 sb.append("    ").append(parent.getWord()).append(" - ").append(parent.getTranslation()).append("\n");
             }
         }
 
         sb.append("子节点: \n");
-        if (node.getChildren().isEmpty()) {
+        List<TrieNode> descendants = current.descendants(node);
+        if (descendants.isEmpty()) {
             sb.append("    无\n");
         } else {
-            for (TrieNode child : node.getChildren()) {
+            for (TrieNode child : descendants) {
                 sb.append("    ").append(child.getWord()).append(" - ").append(child.getTranslation()).append("\n");
             }
         }
@@ -220,8 +1356,9 @@ public class WordService {
      * @param node 当前节点
      * @param level 层级
      * @param sb StringBuilder 用于构建输出
+     * @param visited 已输出的节点编号
      */
-    private void appendChildrenInfoV1(TrieNode node, int level, StringBuilder sb) {
+    private void appendChildrenInfoV1(TrieNode node, int level, StringBuilder sb, BitSet visited) {
         if (node.getChildren().isEmpty()) {
             if (level == 1) { // 如果根查询的节点没有子节点
                 sb.append(indent(level)).append("无子节点\n");
@@ -230,8 +1367,12 @@ public class WordService {
         }
 
         for (TrieNode child : node.getChildren()) {
+            if (visited.get(child.getId())) {
+                continue;
+            }
+            visited.set(child.getId());
             sb.append(indent(level)).append(child.getWord()).append(" - ").append(child.getTranslation()).append("\n");
-            appendChildrenInfoV1(child, level + 1, sb);
+            appendChildrenInfoV1(child, level + 1, sb, visited);
         }
     }
 
@@ -248,15 +1389,60 @@ public class WordService {
         return indent.toString();
     }
 
-    // TODO: 实现删除单词和修改单词的方法
-    // public void deleteWord(String word) { ... }
-    // public void updateWord(String oldWord, String newWord, String newTranslation, String newUshone, String newUkphone) { ... }
+    /**
+     * 将整个单词树以 JSON 格式逐个节点写入输出流。
+     * 树模式下写出共用的只读副本，写出期间不持有锁，
+     * 慢客户端不会阻塞修改。输出的节点编号与 compact 模式一样按单词重新分配，只用于文档内的 ref 引用
+     * @param out 输出流，写完后不关闭
+     * @throws IOException 写入失败，例如客户端断开
+     */
+    public void writeWordTree(OutputStream out) throws IOException {
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            WordGraph current = graph;
+            if (!(current instanceof CompactWordTree)) {
+                current = frozen();
+            }
+            writeWordTree(current, out);
+        } finally {
+            sample.stop(treeTimer);
+        }
+    }
 
     /**
-     * 获取整个单词树的 JSON 表示
-     * @return JSON 字符串
+     * tree 模式下整棵树的只读副本，在读锁内生成。单词树没有修改时各个请求共用同一份，
+     * 同时到达的请求只生成一次
+     * @return 只读副本，compact 模式下为 graph 本身
      */
-    public String getWordTreeJson() {
-        return wordTree.toPrettyJson();
+    private WordGraph frozen() {
+        synchronized (frozenLock) {
+            long stamp = lock.readLock();
+            try {
+                WordGraph current = graph;
+                return current instanceof WordTree ? frozen((WordTree) current) : current;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    /**
+     * 单词树的只读副本，没有修改时返回缓存的副本。调用方持有 frozenLock 和读锁
+     * @param tree 单词树
+     * @return 只读副本
+     */
+    private CompactWordTree frozen(WordTree tree) {
+        if (frozen == null || frozenSource.get() != tree || frozenModCount != tree.modCount()) {
+            frozen = CompactWordTree.of(tree);
+            frozenSource = new WeakReference<>(tree);
+            frozenModCount = tree.modCount();
+        }
+        return frozen;
+    }
+
+    private static void writeWordTree(WordGraph current, OutputStream out) throws IOException {
+        try (JsonGenerator gen = JsonSupport.prettyGenerator(out)) {
+            current.writeJson(gen);
+        }
     }
 }
\ No newline at end of file
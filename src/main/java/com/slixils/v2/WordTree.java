@@ -1,22 +1,78 @@
 package com.slixils.v2;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
+import com.fasterxml.jackson.core.JsonGenerator;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.io.IOException;
 import java.io.Serializable;
 // 定义 WordTree 类
 @Slf4j
-public class WordTree implements Serializable {
+public class WordTree implements Serializable, WordGraph {
 
     private static final long serialVersionUID = 1L;
+    /** 一次连接的新节点不超过该数量时逐条二分插入，否则追加后统一排序 */
+    private static final int SORTED_INSERT_LIMIT = 16;
     private TrieNode root;
+    /** 单词到节点的索引，由 insert 维护，用于 O(1) 精确查找 */
+    private final Map<String, TrieNode> index = new HashMap<>();
+    /** 子串包含关系索引，用于在插入时直接定位需要连接的节点 */
+    private final SubstringIndex substringIndex = new SubstringIndex();
+    /** 传递规约模式：只保存直接包含关系（Hasse 图的边），间接的祖先和后代在查询时再计算 */
+    private final boolean transitiveReduction;
+    /** 下一个分配给新单词的节点编号，根节点编号为 0 */
+    private int nextId = 1;
+    /** 单词集合的版本号，每次加入单词后递增 */
+    private int version;
+    /** 修改次数，比 version 多计入只改翻译和发音的修改，用于判断整棵树的副本是否过期 */
+    private int modCount;
+    /** 缓存的多模式匹配自动机及其对应的版本号，在锁外构建完成后整体换入 */
+    private transient volatile AhoCorasick scanner;
+    private transient volatile int scannerVersion = -1;
+    /** 是否已有替换过期自动机的构建任务在进行，由 this 保护 */
+    private transient boolean scannerBuilding;
+    /** 边数和最大子节点数，单词集合变化后第一次使用时重新统计 */
+    private transient int edgeCount;
+    private transient int maxFanOut;
+    private transient int statsVersion = -1;
+    /** 单词图变化的监听器，可以为 null */
+    private transient ChangeListener changeListener;
+
+    /**
+     * 单词图变化的监听器，在修改单词图的线程中调用
+     */
+    public interface ChangeListener {
+        /**
+         * 这些单词的查询结果（自身及展开的父子节点）可能已经变化
+         * @param nodes 受影响的单词
+         */
+        void changed(Collection<TrieNode> nodes);
+
+        /**
+         * 大量单词变化或编号改变，所有查询结果都应作废
+         */
+        void reset();
+    }
+
+    /**
+     * 设置单词图变化的监听器
+     * @param changeListener 监听器，为 null 时不通知
+     */
+    public void setChangeListener(ChangeListener changeListener) {
+        this.changeListener = changeListener;
+    }
 
     /**
      * 获取根节点
@@ -30,7 +86,24 @@ public class WordTree implements Serializable {
      * WordTree 构造函数
      */
     public WordTree() {
+        this(false);
+    }
+
+    /**
+     * WordTree 构造函数
+     * @param transitiveReduction 是否只保存直接包含关系
+     */
+    public WordTree(boolean transitiveReduction) {
         this.root = new TrieNode(null, null, null,null);
+        this.transitiveReduction = transitiveReduction;
+    }
+
+    /**
+     * 是否为传递规约模式
+     * @return 只保存直接包含关系时返回 true
+     */
+    public boolean isTransitiveReduction() {
+        return transitiveReduction;
     }
 
     /**
@@ -41,55 +114,608 @@ public class WordTree implements Serializable {
      * @param ukphone 英式发音
      */
     public void insert(String newWord, String translation,String ushone,String ukphone) {
+        if (index.containsKey(newWord)) {
+            log.error("单词已经存在！:{}-{}",newWord,translation);
+            return;
+        }
         TrieNode newNode = new TrieNode(newWord, translation,ushone,ukphone);
+        newNode.id = nextId++;
+        index.put(newWord, newNode);
+        substringIndex.addToTrie(newNode);
+        link(Collections.singletonList(newNode), null);
+    }
 
-        List<TrieNode> nodes = getAllNodes();
-        nodes.sort((n1, n2) -> {
-            int len1 = n1.word != null ? n1.word.length() : 0;
-            int len2 = n2.word != null ? n2.word.length() : 0;
-            return -Integer.compare(len1, len2);
-        });
+    /**
+     * 插入一批实时加入的单词：一遍查索引登记新单词，再一次性建立包含关系，版本只递增一次。
+     * 结果与按顺序逐个 insert 相同，已存在的单词和批内重复的单词跳过，翻译可以为 null
+     * @param words 单词
+     * @return 实际插入的节点，按在 words 中的顺序排列
+     */
+    public List<TrieNode> insertAll(List<Word> words) {
+        List<TrieNode> added = new ArrayList<>(words.size());
+        for (Word word : words) {
+            String name = word.getName();
+            if (index.containsKey(name)) {
+                continue;
+            }
+            TrieNode node = new TrieNode(name, word.getTranslation(), word.getUsphone(), word.getUkphone());
+            node.id = nextId++;
+            index.put(name, node);
+            substringIndex.addToTrie(node);
+            added.add(node);
+        }
+        if (!added.isEmpty()) {
+            link(added, null);
+        }
+        return added;
+    }
+
+    /**
+     * 删除单词，只修复与它相连的边：完整模式下从父节点和子节点的列表中移除它；
+     * 传递规约模式下它的直接子节点还要重新计算直接父节点，补上原来经过它的包含关系。
+     * 失去全部父节点的单词挂回根节点下
+     * @param word 要删除的单词
+     * @return 单词存在并已删除时返回 true
+     */
+    public boolean delete(String word) {
+        TrieNode node = index.get(word);
+        if (node == null) {
+            return false;
+        }
+        version++;
+        modCount++;
+        // 删除前收集受影响的单词，它们的查询结果中都包含被删除的单词
+        Set<TrieNode> affected = related(node);
+        index.remove(word);
+        substringIndex.remove(node);
+
+        for (TrieNode parent : node.parents) {
+            parent.removeChild(node);
+        }
+        if (node.parents.isEmpty()) {
+            root.removeChild(node);
+        }
+        for (TrieNode child : node.children) {
+            child.removeParent(node);
+            if (transitiveReduction) {
+                // 原来的其它直接父节点仍然是直接父节点，只需补上缺少的
+                for (TrieNode parent : maximal(substringIndex.substringsOf(child.word))) {
+                    if (parent.findChild(child.word) == null) {
+                        connect(parent, child, false);
+                    }
+                }
+            }
+            if (child.parents.isEmpty()) {
+                root.addChild(child);
+            }
+        }
+        node.parents = new ArrayList<>();
+        node.children = new ArrayList<>();
+        notifyChanged(affected);
+        return true;
+    }
+
+    /**
+     * 修改单词的翻译和发音，包含关系不变，只作废受影响的查询结果
+     * @param word 要修改的单词
+     * @param translation 新翻译，为 null 时不修改
+     * @param ushone 新美式发音，为 null 时不修改
+     * @param ukphone 新英式发音，为 null 时不修改
+     * @return 单词存在并已修改时返回 true
+     */
+    public boolean update(String word, String translation, String ushone, String ukphone) {
+        TrieNode node = index.get(word);
+        if (node == null) {
+            return false;
+        }
+        if (translation != null) {
+            node.translation = translation;
+        }
+        if (ushone != null) {
+            node.ushone = ushone;
+        }
+        if (ukphone != null) {
+            node.ukphone = ukphone;
+        }
+        modCount++;
+        notifyChanged(related(node));
+        return true;
+    }
+
+    /**
+     * 单词改名：删除旧单词再插入新单词，未指定的翻译和发音沿用旧值
+     * @param word 原单词
+     * @param newWord 新单词
+     * @param translation 新翻译，为 null 时沿用
+     * @param ushone 新美式发音，为 null 时沿用
+     * @param ukphone 新英式发音，为 null 时沿用
+     * @return 原单词存在并已改名时返回 true
+     * @throws IllegalStateException 新单词已经存在
+     */
+    public boolean rename(String word, String newWord, String translation, String ushone, String ukphone) {
+        TrieNode node = index.get(word);
+        if (node == null) {
+            return false;
+        }
+        if (index.containsKey(newWord)) {
+            throw new IllegalStateException("单词已经存在: " + newWord);
+        }
+        delete(word);
+        insert(newWord,
+                translation != null ? translation : node.translation,
+                ushone != null ? ushone : node.ushone,
+                ukphone != null ? ukphone : node.ukphone);
+        return true;
+    }
+
+    /**
+     * 批量构建：一次性登记所有单词，再统一计算包含关系并连接节点。
+     * 每个节点的 children / parents 只在最后排序一次，而不是每加一条边排序一次。
+     * 可以在已有单词的树上调用，结果与逐个 insert 相同。
+     * @param words 单词列表
+     */
+    public void bulkBuild(List<Word> words) {
+        bulkBuild(words, null);
+    }
+
+    /**
+     * 并行批量构建：各单词的包含关系互不依赖，在 ForkJoinPool 中分段计算后再合并到邻接列表
+     * @param words 单词列表
+     * @param pool 用于并行计算的线程池，为 null 时在当前线程顺序执行
+     */
+    public void bulkBuild(List<Word> words, ForkJoinPool pool) {
+        List<TrieNode> added = new ArrayList<>(words.size());
+        int duplicates = 0;
+        for (Word word : words) {
+            String name = word.getName();
+            if (name == null || !word.hasTranslation()) {
+                continue;
+            }
+            if (index.containsKey(name)) {
+                duplicates++;
+                continue;
+            }
+            TrieNode node = new TrieNode(name, word.resolveTranslation(), word.getUsphone(), word.getUkphone());
+            node.id = nextId++;
+            index.put(name, node);
+            substringIndex.addToTrie(node);
+            added.add(node);
+        }
+        link(added, pool);
+        // 重复单词按批汇总，不逐条打印
+        if (duplicates > 0) {
+            log.warn("批量构建时跳过 {} 个已存在的单词", duplicates);
+        }
+        log.info("批量构建完成，新增 {} 个单词，共 {} 个单词", added.size(), index.size());
+    }
 
+    /**
+     * 接管从快照恢复的节点：节点之间的父子关系已经建立且有序，这里只重新编号、建立索引并挂到根节点下。
+     * 只能在空树上调用。
+     * @param nodes 按字母顺序排列的节点
+     */
+    void adopt(List<TrieNode> nodes) {
+        version++;
+        modCount++;
         for (TrieNode node : nodes) {
-            if (newWord.equals(node.word)) {
-                log.error("单词已经存在！:{}-{}",newWord,translation);
-//                throw new RuntimeException("单词已经存在！"+newWord+"-{"+translation+"}");
+            node.id = nextId++;
+            index.put(node.word, node);
+            substringIndex.addToTrie(node);
+            if (node.parents.isEmpty()) {
+                root.appendChild(node);
             }
+        }
+        substringIndex.addSuffixes(nodes);
+        root.sortLinks();
+    }
+
+    /**
+     * 为新登记的节点建立包含关系。调用前这些节点已加入前缀字典树，但尚未加入后缀集合。
+     * 查询索引的部分是只读的，可以并行；写邻接列表的部分顺序合并。
+     * 少量节点时逐条二分插入保持列表有序；批量时先追加，最后对每个被修改的列表统一排序一次。
+     * @param added 新节点
+     * @param pool 并行线程池，为 null 时顺序执行
+     */
+    private void link(List<TrieNode> added, ForkJoinPool pool) {
+        version++;
+        modCount++;
+        boolean seal = added.size() > SORTED_INSERT_LIMIT;
+        Set<TrieNode> touched = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<TrieNode> demoted = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (transitiveReduction) {
+            linkReduced(added, pool, seal, touched, demoted);
+        } else {
+            linkFull(added, pool, seal, touched, demoted);
+        }
+
+        if (seal) {
+            // 每个列表只排序一次，各节点互不影响，可以并行
+            List<TrieNode> toSort = new ArrayList<>(touched);
+            forEach(pool, toSort.size(), i -> toSort.get(i).sortLinks());
+        }
 
-            if (isSubword(node.word, newWord)) {
-                TrieNode existingChild = node.findChild(newWord);
-                if (existingChild == null) {
-                    node.addChild(newNode);
+        // 根节点下只挂没有父节点的单词
+        if (seal) {
+            if (!demoted.isEmpty()) {
+                root.children.removeIf(demoted::contains);
+            }
+            for (TrieNode node : added) {
+                if (node.parents.isEmpty()) {
+                    root.appendChild(node);
                 }
-                newNode.addParent(node);
-            } else if (isSubword(newWord, node.word)) {
-                TrieNode existingChild = newNode.findChild(node.word);
-                if (existingChild == null) {
-                    newNode.addChild(node);
+            }
+            root.sortLinks();
+        } else {
+            for (TrieNode node : demoted) {
+                root.removeChild(node);
+            }
+            for (TrieNode node : added) {
+                if (node.parents.isEmpty()) {
+                    root.addChild(node);
                 }
-                node.addParent(newNode);
             }
         }
 
-        if (newNode.parents.isEmpty()) {
-            TrieNode existingChild = root.findChild(newWord);
-            if (existingChild == null) {
-                root.addChild(newNode);
+        if (seal) {
+            substringIndex.addSuffixes(added);
+        } else {
+            for (TrieNode node : added) {
+                substringIndex.addSuffixes(node);
             }
         }
+        notifyChanged(added, seal);
     }
 
     /**
-     * 判断 w1 是否是 w2 的子串
-     * @param w1 字符串1
-     * @param w2 字符串2
-     * @return 如果 w1 是 w2 的子串则返回 true，否则返回 false
+     * 通知监听器。新单词 N 的查询结果会出现在它的所有祖先和后代的查询结果中，
+     * 传递规约模式下删除的边也只在 N 的祖先和后代之间，因此受影响的正好是 N 的子串单词和包含 N 的单词
+     * @param added 新节点
+     * @param bulk 批量加入时直接作废全部结果
      */
-    private boolean isSubword(String w1, String w2) {
-        if (w1 == null || w2 == null) {
-            return false;
+    private void notifyChanged(List<TrieNode> added, boolean bulk) {
+        ChangeListener listener = changeListener;
+        if (listener == null || added.isEmpty()) {
+            return;
+        }
+        if (bulk) {
+            listener.reset();
+            return;
+        }
+        Set<TrieNode> affected = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (TrieNode node : added) {
+            affected.addAll(related(node));
+        }
+        listener.changed(affected);
+    }
+
+    /**
+     * 删除或修改单词后通知监听器
+     * @param affected 查询结果受影响的单词，包括被删除或修改的单词本身
+     */
+    private void notifyChanged(Set<TrieNode> affected) {
+        ChangeListener listener = changeListener;
+        if (listener != null) {
+            listener.changed(affected);
+        }
+    }
+
+    /**
+     * 单词本身及其所有子串单词和包含它的单词，即查询结果中会出现该单词的所有单词
+     * @param node 单词节点
+     * @return 相关单词
+     */
+    private Set<TrieNode> related(TrieNode node) {
+        Set<TrieNode> related = Collections.newSetFromMap(new IdentityHashMap<>());
+        related.add(node);
+        related.addAll(substringIndex.substringsOf(node.word));
+        related.addAll(substringIndex.containing(node.word));
+        return related;
+    }
+
+    /**
+     * 完整模式：每个单词连接到所有包含它和被它包含的单词
+     * @param added 新节点
+     * @param pool 并行线程池
+     * @param seal 是否只追加、稍后统一排序
+     * @param touched 收集邻接列表被修改的节点
+     * @param demoted 收集原本没有父节点、现在有了父节点的节点
+     */
+    private void linkFull(List<TrieNode> added, ForkJoinPool pool, boolean seal,
+                          Set<TrieNode> touched, Set<TrieNode> demoted) {
+        int size = added.size();
+        List<List<TrieNode>> parentsOf = new ArrayList<>(Collections.nCopies(size, null));
+        List<List<TrieNode>> childrenOf = new ArrayList<>(Collections.nCopies(size, null));
+        // 新单词中出现的单词（包括同批新单词）作为父节点；
+        // 包含新单词的已有单词作为子节点，此时后缀集合中只有已有单词
+        forEach(pool, size, i -> {
+            String word = added.get(i).word;
+            parentsOf.set(i, substringIndex.substringsOf(word));
+            childrenOf.set(i, substringIndex.containing(word));
+        });
+
+        for (int i = 0; i < size; i++) {
+            TrieNode node = added.get(i);
+            touched.add(node);
+            for (TrieNode parent : parentsOf.get(i)) {
+                connect(parent, node, seal);
+                touched.add(parent);
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            TrieNode node = added.get(i);
+            for (TrieNode child : childrenOf.get(i)) {
+                if (child.parents.isEmpty()) {
+                    demoted.add(child);
+                }
+                connect(node, child, seal);
+                touched.add(child);
+            }
+        }
+    }
+
+    /**
+     * 传递规约模式：一个单词的直接父节点只取决于它所包含的单词集合，
+     * 因此只需重新计算新单词以及包含新单词的已有单词的直接父节点，并据此增删边
+     * @param added 新节点
+     * @param pool 并行线程池
+     * @param seal 是否只追加、稍后统一排序
+     * @param touched 收集邻接列表被修改的节点
+     * @param demoted 收集原本没有父节点、现在有了父节点的节点
+     */
+    private void linkReduced(List<TrieNode> added, ForkJoinPool pool, boolean seal,
+                             Set<TrieNode> touched, Set<TrieNode> demoted) {
+        Set<TrieNode> addedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        addedSet.addAll(added);
+        Set<TrieNode> affectedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        affectedSet.addAll(added);
+        for (TrieNode node : added) {
+            affectedSet.addAll(substringIndex.containing(node.word));
+        }
+        List<TrieNode> affected = new ArrayList<>(affectedSet);
+        int size = affected.size();
+        List<List<TrieNode>> parentsOf = new ArrayList<>(Collections.nCopies(size, null));
+        forEach(pool, size, i -> parentsOf.set(i, maximal(substringIndex.substringsOf(affected.get(i).word))));
+
+        // 先删除失效的边，此时所有列表仍然有序，可以二分查找
+        List<Set<TrieNode>> addedParents = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            TrieNode node = affected.get(i);
+            Set<TrieNode> keep = Collections.newSetFromMap(new IdentityHashMap<>());
+            keep.addAll(parentsOf.get(i));
+            for (TrieNode parent : node.parents) {
+                if (!keep.remove(parent)) {
+                    parent.removeChild(node);
+                    touched.add(parent);
+                }
+            }
+            // keep 中剩下的是新增的直接父节点
+            addedParents.add(keep);
+        }
+        for (int i = 0; i < size; i++) {
+            TrieNode node = affected.get(i);
+            List<TrieNode> newParents = parentsOf.get(i);
+            for (TrieNode parent : addedParents.get(i)) {
+                if (seal) {
+                    parent.appendChild(node);
+                } else {
+                    parent.addChild(node);
+                }
+                touched.add(parent);
+            }
+            if (node.parents.isEmpty() && !newParents.isEmpty() && !addedSet.contains(node)) {
+                demoted.add(node);
+            }
+            node.parents = new ArrayList<>(newParents);
+            if (!seal) {
+                node.parents.sort(TrieNode.BY_WORD);
+            }
+            touched.add(node);
+        }
+    }
+
+    /**
+     * 建立一条父子边
+     * @param parent 父节点（较短的单词）
+     * @param child 子节点（包含父节点的单词）
+     * @param seal 为 true 时只追加，稍后统一排序；否则二分插入
+     */
+    private static void connect(TrieNode parent, TrieNode child, boolean seal) {
+        if (seal) {
+            parent.appendChild(child);
+            child.appendParent(parent);
+        } else {
+            parent.addChild(child);
+            child.addParent(parent);
+        }
+    }
+
+    /**
+     * 只保留不被其它候选单词包含的单词，即直接父节点
+     * @param candidates 某个单词包含的所有单词
+     * @return 直接父节点
+     */
+    private static List<TrieNode> maximal(List<TrieNode> candidates) {
+        if (candidates.size() < 2) {
+            return candidates;
+        }
+        List<TrieNode> sorted = new ArrayList<>(candidates);
+        sorted.sort((n1, n2) -> Integer.compare(n2.word.length(), n1.word.length()));
+        List<TrieNode> result = new ArrayList<>();
+        for (TrieNode candidate : sorted) {
+            boolean covered = false;
+            // 被某个更长的候选包含的，必然被某个已保留的候选包含
+            for (TrieNode kept : result) {
+                if (kept.word.contains(candidate.word)) {
+                    covered = true;
+                    break;
+                }
+            }
+            if (!covered) {
+                result.add(candidate);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取单词的所有祖先（直接或间接被它包含的单词），按字母顺序排列。
+     * 完整模式下即父节点列表，传递规约模式下沿父节点逐层展开。
+     * @param node 单词节点
+     * @return 祖先节点列表
+     */
+    public List<TrieNode> ancestors(TrieNode node) {
+        return transitiveReduction ? closure(node, false) : new ArrayList<>(node.parents);
+    }
+
+    /**
+     * 获取单词的所有后代（直接或间接包含它的单词），按字母顺序排列。
+     * 完整模式下即子节点列表，传递规约模式下沿子节点逐层展开。
+     * @param node 单词节点
+     * @return 后代节点列表
+     */
+    public List<TrieNode> descendants(TrieNode node) {
+        return transitiveReduction ? closure(node, true) : new ArrayList<>(node.children);
+    }
+
+    @Override
+    public List<TrieNode> suggest(String prefix, int k) {
+        return substringIndex.suggest(prefix, k);
+    }
+
+    /**
+     * 获取多模式匹配自动机，单词集合变化后在调用线程中重新构建；已有其他线程在替换过期的自动机时返回旧的。
+     * 需要在读锁外构建时使用 {@link #rebuildScanner()}
+     * @return 自动机
+     */
+    @Override
+    public AhoCorasick scanner() {
+        Runnable rebuild = rebuildScanner();
+        if (rebuild != null) {
+            rebuild.run();
+        }
+        return scanner;
+    }
+
+    /**
+     * 当前的自动机，可能不包含最近的修改
+     * @return 自动机，还没有构建过时为 null
+     */
+    AhoCorasick currentScanner() {
+        return scanner;
+    }
+
+    /**
+     * 自动机过期时准备重新构建：只在调用线程中复制节点列表，排序和构建在返回的任务中进行，
+     * 任务可以在锁外执行，完成后换入新的自动机，在此之前查询继续使用旧的。
+     * 调用方持有读锁，不能与修改同时进行
+     * @return 构建任务；自动机是最新的，或已有任务在替换过期的自动机时返回 null
+     */
+    synchronized Runnable rebuildScanner() {
+        AhoCorasick current = scanner;
+        if (current != null && (scannerVersion == version || scannerBuilding)) {
+            return null;
+        }
+        // 还没有自动机时每个调用方都要立即拿到结果，不等待其他线程
+        boolean replacing = current != null;
+        scannerBuilding |= replacing;
+        TrieNode[] nodes = index.values().toArray(new TrieNode[0]);
+        int builtVersion = version;
+        return () -> {
+            try {
+                long start = System.nanoTime();
+                Arrays.sort(nodes, TrieNode.BY_WORD);
+                List<String> words = new ArrayList<>(nodes.length);
+                for (TrieNode node : nodes) {
+                    words.add(node.word);
+                }
+                AhoCorasick built = new AhoCorasick(words, i -> nodes[i]);
+                installScanner(built, builtVersion);
+                log.info("多模式匹配自动机已构建：{} 个单词，{} 个状态，耗时 {} ms",
+                        words.size(), built.stateCount(), (System.nanoTime() - start) / 1_000_000);
+            } finally {
+                if (replacing) {
+                    synchronized (this) {
+                        scannerBuilding = false;
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * 换入新构建的自动机，不覆盖由更新版本构建的自动机
+     */
+    private synchronized void installScanner(AhoCorasick built, int builtVersion) {
+        if (scanner == null || builtVersion - scannerVersion > 0) {
+            scanner = built;
+            scannerVersion = builtVersion;
+        }
+    }
+
+    /**
+     * 广度优先展开父节点或子节点，每个节点只访问一次
+     * @param node 起始节点
+     * @param downward true 表示沿子节点展开，false 表示沿父节点展开
+     * @return 除起始节点外所有可达节点，按字母顺序排列
+     */
+    private List<TrieNode> closure(TrieNode node, boolean downward) {
+        Set<TrieNode> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<TrieNode> result = new ArrayList<>();
+        visited.add(node);
+        for (int i = -1; i < result.size(); i++) {
+            TrieNode current = i < 0 ? node : result.get(i);
+            for (TrieNode next : downward ? current.children : current.parents) {
+                if (visited.add(next)) {
+                    result.add(next);
+                }
+            }
+        }
+        result.sort(TrieNode.BY_WORD);
+        return result;
+    }
+
+    /**
+     * 对 [0, size) 中的每个下标执行 action，有线程池且数量足够大时拆分为 fork-join 任务
+     * @param pool 线程池，为 null 时顺序执行
+     * @param size 下标数量
+     * @param action 要执行的操作，不同下标之间必须互不影响
+     */
+    private static void forEach(ForkJoinPool pool, int size, IntConsumer action) {
+        if (pool == null || size <= RangeTask.THRESHOLD) {
+            for (int i = 0; i < size; i++) {
+                action.accept(i);
+            }
+        } else {
+            pool.invoke(new RangeTask(0, size, action));
+        }
+    }
+
+    /**
+     * 将下标区间对半拆分的 fork-join 任务
+     */
+    private static class RangeTask extends RecursiveAction {
+        private static final int THRESHOLD = 256;
+        private final int from;
+        private final int to;
+        private final IntConsumer action;
+
+        RangeTask(int from, int to, IntConsumer action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    action.accept(i);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeTask(from, mid, action), new RangeTask(mid, to, action));
         }
-        return w2.contains(w1);
     }
 
     /**
@@ -98,20 +724,22 @@ public class WordTree implements Serializable {
      */
     private List<TrieNode> getAllNodes() {
         List<TrieNode> result = new ArrayList<>();
-        dfs(root, result);
+        dfs(root, result, new BitSet(nextId));
         return result;
     }
 
     /**
-     * 深度优先搜索遍历节点
+     * 深度优先搜索遍历节点，同一节点有多个父节点时只访问一次
      * @param node 当前节点
      * @param result 结果列表
+     * @param visited 已访问的节点编号
      */
-    private void dfs(TrieNode node, List<TrieNode> result) {
-        if (node != null) {
+    private void dfs(TrieNode node, List<TrieNode> result, BitSet visited) {
+        if (node != null && !visited.get(node.id)) {
+            visited.set(node.id);
             result.add(node);
             for (TrieNode child : node.children) {
-                dfs(child, result);
+                dfs(child, result, visited);
             }
         }
     }
@@ -122,12 +750,91 @@ public class WordTree implements Serializable {
      * @return 找到的节点，否则返回 null
      */
     public TrieNode findNode(String word) {
-        for (TrieNode node : getAllNodes()) {
-            if (word.equals(node.word)) {
-                return node;
-            }
+        return index.get(word);  // 如果找不到该单词，返回 null
+    }
+
+    /**
+     * 获取单词总数（不含根节点）
+     * @return 单词数量
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * 获取父子边总数，单词集合变化后第一次调用时重新统计。
+     * 统计时读取全部节点，不能与插入同时进行。
+     * @return 边数
+     */
+    @Override
+    public int edgeCount() {
+        computeStats();
+        return edgeCount;
+    }
+
+    /**
+     * 获取单个单词的最大子节点数，统计方式同 edgeCount
+     * @return 最大子节点数
+     */
+    @Override
+    public int maxFanOut() {
+        computeStats();
+        return maxFanOut;
+    }
+
+    private synchronized void computeStats() {
+        if (statsVersion == version) {
+            return;
+        }
+        int edges = root.children.size();
+        int max = 0;
+        for (TrieNode node : index.values()) {
+            edges += node.children.size();
+            max = Math.max(max, node.children.size());
+        }
+        edgeCount = edges;
+        maxFanOut = max;
+        statsVersion = version;
+    }
+
+    /**
+     * 获取所有单词节点（不含根节点）
+     * @return 单词节点集合
+     */
+    Collection<TrieNode> nodes() {
+        return index.values();
+    }
+
+    /**
+     * 获取节点编号的上界，所有节点编号都小于该值
+     * @return 编号上界
+     */
+    int idBound() {
+        return nextId;
+    }
+
+    /**
+     * 修改次数，任何插入、删除或修改后都会变化
+     * @return 修改次数
+     */
+    int modCount() {
+        return modCount;
+    }
+
+    /**
+     * 按字母顺序重新编号，使编号（以及 JSON 中的 ref）与插入顺序无关。
+     * 编号用于遍历时的去重，不能在遍历进行中调用。
+     */
+    void renumber() {
+        List<TrieNode> sorted = new ArrayList<>(index.values());
+        sorted.sort(TrieNode.BY_WORD);
+        nextId = 1;
+        for (TrieNode node : sorted) {
+            node.id = nextId++;
+        }
+        if (changeListener != null) {
+            changeListener.reset();
         }
-        return null;  // 如果找不到该单词，返回 null
     }
 
     /**
@@ -154,35 +861,54 @@ public class WordTree implements Serializable {
     }
 
     /**
-     * 将 WordTree 转换为格式化的 JSON 字符串
-     * @return JSON 字符串
+     * 将整个图写入 JSON 生成器。
+     * 每个节点只完整输出一次，之后再出现时输出 {"ref": 节点编号}
+     * @param gen JSON 生成器
+     * @throws IOException 写入失败
      */
-    public String toPrettyJson() {
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
-        return gson.toJson(buildJson(root));
+    @Override
+    public void writeJson(JsonGenerator gen) throws IOException {
+        writeJson(gen, root, new BitSet(nextId));
     }
 
     /**
-     * 构建节点的 JSON 对象
+     * 递归写入节点，根节点只输出 children
+     * @param gen JSON 生成器
      * @param node 当前节点
-     * @return JSON 对象
+     * @param visited 已输出的节点编号
+     * @throws IOException 写入失败
      */
-    private JsonObject buildJson(TrieNode node) {
-        JsonObject jsonObject = new JsonObject();
+    static void writeJson(JsonGenerator gen, TrieNode node, BitSet visited) throws IOException {
+        if (visited.get(node.id)) {
+            TrieNode.writeRef(gen, node.id);
+            return;
+        }
+        visited.set(node.id);
+        gen.writeStartObject();
         if (node.word != null) {
-            jsonObject.addProperty("word", node.word);
-            jsonObject.addProperty("translation", node.translation);
-            jsonObject.addProperty("ushone", node.ushone);
-            jsonObject.addProperty("ukphone", node.ukphone);
+            gen.writeNumberField("id", node.id);
+            gen.writeStringField("word", node.word);
+            writeOptional(gen, "translation", node.translation);
+            writeOptional(gen, "ushone", node.ushone);
+            writeOptional(gen, "ukphone", node.ukphone);
         }
-        JsonArray childrenArray = new JsonArray();
-        for (TrieNode child : node.children) {
-            childrenArray.add(buildJson(child));
+        if (!node.children.isEmpty()) {
+            gen.writeArrayFieldStart("children");
+            for (TrieNode child : node.children) {
+                writeJson(gen, child, visited);
+            }
+            gen.writeEndArray();
         }
-        if (childrenArray.size() > 0) {
-            jsonObject.add("children", childrenArray);
+        gen.writeEndObject();
+    }
+
+    /**
+     * 值为 null 的字段不输出
+     */
+    private static void writeOptional(JsonGenerator gen, String name, String value) throws IOException {
+        if (value != null) {
+            gen.writeStringField(name, value);
         }
-        return jsonObject;
     }
 
     /**
@@ -206,7 +932,9 @@ public class WordTree implements Serializable {
 
         // 打印子节点
         System.out.println("子节点: ");
-        printChildrenv1(node, 1);
+        BitSet visited = new BitSet(nextId);
+        visited.set(node.id);
+        printChildrenv1(node, 1, visited);
     }
 
     /**
@@ -215,18 +943,23 @@ public class WordTree implements Serializable {
      * @param level 层级
      */
     /**
-     * 递归打印所有子节点
+     * 递归打印所有子节点，共享的子节点只打印一次
      * @param node 当前节点
      * @param level 层级深度
+     * @param visited 已打印的节点编号
      */
-    private void printChildrenv1(TrieNode node, int level) {
+    private void printChildrenv1(TrieNode node, int level, BitSet visited) {
         if (node.children.isEmpty()) {
             return;
         }
 
         for (TrieNode child : node.children) {
+            if (visited.get(child.id)) {
+                continue;
+            }
+            visited.set(child.id);
             System.out.println(indent(level) + child.word + " - " + child.translation);
-            printChildrenv1(child, level + 1);
+            printChildrenv1(child, level + 1, visited);
         }
     }
 
@@ -276,15 +1009,20 @@ public class WordTree implements Serializable {
      * 显示单词树
      */
     public void display() {
-        display(root, 0);  // 从根节点开始，层级从0开始
+        display(root, 0, new BitSet(nextId));  // 从根节点开始，层级从0开始
     }
 
     /**
-     * 递归显示节点
+     * 递归显示节点，共享的节点只显示一次
      * @param node 当前节点
      * @param level 层级
+     * @param visited 已显示的节点编号
      */
-    private void display(TrieNode node, int level) {
+    private void display(TrieNode node, int level, BitSet visited) {
+        if (visited.get(node.id)) {
+            return;
+        }
+        visited.set(node.id);
         StringBuilder indent = new StringBuilder();  // 用于存储缩进的字符串
         for (int i = 0; i < level; i++) {  // 根据节点的层级设置缩进
             indent.append("    ");  // 每个层级增加四个空格
@@ -294,7 +1032,7 @@ public class WordTree implements Serializable {
             System.out.println(indent + node.word + " - " + node.translation);
         }
         for (TrieNode child : node.children) {  // 遍历当前节点的子节点
-            display(child, level + 1);  // 递归调用 display 打印子节点，层级+1
+            display(child, level + 1, visited);  // 递归调用 display 打印子节点，层级+1
         }
     }
     /**
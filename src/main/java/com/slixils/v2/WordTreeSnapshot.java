@@ -0,0 +1,302 @@
+package com.slixils.v2;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * WordTree 快照：以紧凑的自定义格式保存和恢复整个单词图
+ * <p>
+ * 父子关系互相引用，默认的 Java 序列化会沿引用递归，既慢又可能栈溢出。
+ * 快照按顺序写出：
+ * <pre>
+ * 魔数、版本
+ * 节点表：节点数，然后按字母顺序写出每个节点的单词、翻译、美式发音、英式发音
+ * 边表：按节点表顺序写出每个节点的子节点个数和子节点在节点表中的下标
+ * 元数据（32 字节）：标志位、节点数、边数、生成时间、前面所有内容的 CRC32
+ * </pre>
+ * 父节点列表由边表反推，根节点的子节点即没有父节点的单词；读写都通过带缓冲的 FileChannel 流式进行。
+ * 读取时先按剩余字节数检查各项计数和长度再分配数组，损坏的文件抛出 IOException。
+ */
+@Slf4j
+public final class WordTreeSnapshot {
+
+    private static final int MAGIC = 0x5754534E; // "WTSN"
+    private static final int VERSION = 1;
+    private static final int TRAILER_SIZE = 32;
+    private static final int FLAG_TRANSITIVE_REDUCTION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private WordTreeSnapshot() {
+    }
+
+    /**
+     * 将单词树写入快照文件，先写临时文件再替换
+     * @param tree 单词树
+     * @param file 快照文件路径
+     * @throws IOException 写入失败
+     */
+    public static void write(WordTree tree, Path file) throws IOException {
+        write(CompactWordTree.of(tree), file);
+    }
+
+    /**
+     * 将单词树的只读副本写入快照文件，先写临时文件再替换。
+     * 副本的编号即字母顺序，节点表下标为编号减一；写入期间不需要持有单词树的锁
+     * @param graph 由 {@link CompactWordTree#of} 生成的只读副本
+     * @param file 快照文件路径
+     * @throws IOException 写入失败
+     */
+    public static void write(CompactWordTree graph, Path file) throws IOException {
+        int count = graph.size();
+        IntBuffer childOffsets = graph.childOffsets();
+        IntBuffer childTargets = graph.childTargets();
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        long edges = 0;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Output out = new Output(channel);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+
+            out.putInt(count);
+            for (int id = 1; id <= count; id++) {
+                for (String value : graph.fields(id)) {
+                    out.putString(value);
+                }
+            }
+
+            for (int id = 1; id <= count; id++) {
+                int from = childOffsets.get(id);
+                int to = childOffsets.get(id + 1);
+                out.putInt(to - from);
+                for (int k = from; k < to; k++) {
+                    out.putInt(childTargets.get(k) - 1);
+                }
+                edges += to - from;
+            }
+            out.flush();
+
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+            trailer.putInt(graph.isTransitiveReduction() ? FLAG_TRANSITIVE_REDUCTION : 0)
+                    .putInt(count)
+                    .putLong(edges)
+                    .putLong(System.currentTimeMillis())
+                    .putLong(out.crc.getValue());
+            ((Buffer) trailer).flip();
+            while (trailer.hasRemaining()) {
+                channel.write(trailer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("快照已写入 {}：{} 个单词，{} 条边", file, count, edges);
+    }
+
+    /**
+     * 从快照文件恢复单词树
+     * @param file 快照文件路径
+     * @return 恢复出的单词树
+     * @throws IOException 读取失败或文件已损坏
+     */
+    public static WordTree read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 12 + TRAILER_SIZE) {
+                throw new IOException("快照文件不完整: " + file);
+            }
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+            while (trailer.hasRemaining()) {
+                if (channel.read(trailer, size - TRAILER_SIZE + trailer.position()) < 0) {
+                    throw new IOException("快照文件不完整: " + file);
+                }
+            }
+            ((Buffer) trailer).flip();
+            boolean reduced = (trailer.getInt() & FLAG_TRANSITIVE_REDUCTION) != 0;
+            int nodeCount = trailer.getInt();
+            long edgeCount = trailer.getLong();
+            trailer.getLong(); // 生成时间
+            long checksum = trailer.getLong();
+
+            Input in = new Input(channel, size - TRAILER_SIZE);
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw new IOException("快照格式或版本不匹配: " + file);
+            }
+            int count = in.getInt();
+            if (count != nodeCount || count < 0 || count > in.remaining() / 16) {
+                // 每个节点至少有 4 个字符串长度
+                throw new IOException("快照节点数不一致: " + file);
+            }
+            List<TrieNode> nodes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                nodes.add(new TrieNode(in.getString(), in.getString(), in.getString(), in.getString()));
+            }
+            long edges = 0;
+            // 按字母顺序遍历父节点并追加，得到的 parents 列表天然有序
+            for (TrieNode node : nodes) {
+                int children = in.getInt();
+                if (children < 0 || children > in.remaining() / 4) {
+                    throw new IOException("快照边表已损坏: " + file);
+                }
+                ((ArrayList<TrieNode>) node.children).ensureCapacity(children);
+                for (int j = 0; j < children; j++) {
+                    int index = in.getInt();
+                    if (index < 0 || index >= count) {
+                        throw new IOException("快照边表已损坏: " + file);
+                    }
+                    TrieNode child = nodes.get(index);
+                    node.appendChild(child);
+                    child.appendParent(node);
+                }
+                edges += children;
+            }
+            if (edges != edgeCount || in.remaining() != 0 || in.crc.getValue() != checksum) {
+                throw new IOException("快照校验失败: " + file);
+            }
+
+            WordTree tree = new WordTree(reduced);
+            tree.adopt(nodes);
+            log.info("已从快照 {} 恢复：{} 个单词，{} 条边", file, count, edges);
+            return tree;
+        }
+    }
+
+    /**
+     * 带缓冲的写入，同时计算 CRC32
+     */
+    private static class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CRC32 crc = new CRC32();
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        /**
+         * 写入 UTF-8 字符串，长度 -1 表示 null
+         */
+        void putString(String value) throws IOException {
+            if (value == null) {
+                putInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            if (bytes.length > buffer.capacity()) {
+                flush();
+                write(ByteBuffer.wrap(bytes));
+                return;
+            }
+            ensure(bytes.length);
+            buffer.put(bytes);
+        }
+
+        void flush() throws IOException {
+            ((Buffer) buffer).flip();
+            write(buffer);
+            ((Buffer) buffer).clear();
+        }
+
+        private void write(ByteBuffer source) throws IOException {
+            crc.update(source.duplicate());
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * 带缓冲的读取，只读到 end 为止，同时计算 CRC32
+     */
+    private static class Input {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CRC32 crc = new CRC32();
+        private long position;
+        private final long end;
+
+        Input(FileChannel channel, long end) {
+            this.channel = channel;
+            this.end = end;
+            ((Buffer) buffer).flip();
+        }
+
+        int getInt() throws IOException {
+            ensure(4);
+            return buffer.getInt();
+        }
+
+        String getString() throws IOException {
+            int length = getInt();
+            if (length == -1) {
+                return null;
+            }
+            if (length < 0 || length > remaining()) {
+                throw new IOException("快照文件已损坏");
+            }
+            byte[] bytes = new byte[length];
+            int offset = 0;
+            while (offset < length) {
+                ensure(1);
+                int n = Math.min(buffer.remaining(), length - offset);
+                buffer.get(bytes, offset, n);
+                offset += n;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        long remaining() {
+            return end - position + buffer.remaining();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                int limit = (int) Math.min(buffer.remaining(), end - position);
+                if (limit <= 0) {
+                    throw new IOException("快照文件不完整");
+                }
+                ByteBuffer chunk = buffer.duplicate();
+                ((Buffer) chunk).limit(chunk.position() + limit);
+                int n = channel.read(chunk, position);
+                if (n < 0) {
+                    throw new IOException("快照文件不完整");
+                }
+                ByteBuffer read = buffer.duplicate();
+                ((Buffer) read).limit(buffer.position() + n);
+                crc.update(read);
+                ((Buffer) buffer).position(buffer.position() + n);
+                position += n;
+            }
+            ((Buffer) buffer).flip();
+        }
+    }
+}
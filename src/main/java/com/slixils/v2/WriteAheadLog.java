@@ -0,0 +1,509 @@
+package com.slixils.v2;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
+
+/**
+ * 实时修改的预写日志：插入、删除和修改单词按发生顺序追加到文件末尾，重启时在词典或快照之上重放
+ * <p>
+ * 文件格式：
+ * <pre>
+ * 魔数、版本
+ * 记录：载荷长度、载荷的 CRC32、载荷（操作类型和各字段，字符串长度 -1 表示 null）
+ * </pre>
+ * 追加只写入内存缓冲并返回这一组记录的 future；刷盘线程调用 {@link #flush()} 把缓冲中的一组记录一次写入并 fsync 后完成它（组提交）。
+ * 调用方在返回前等待 future，已确认的修改都已落盘；上一次 fsync 期间到达的修改攒成下一组，一次 fsync 分摊到整组。
+ * 打开时读到长度或校验不对的记录即视为写到一半的尾部，截断后继续追加。
+ * <p>
+ * 保存快照后截掉快照已包含的前缀（压缩）：其后的记录复制到新文件，再原子替换原文件。
+ * 快照写入后、日志替换前崩溃时，重启会在新快照上重放一遍旧日志；
+ * 每条记录都是"设为某个状态"的操作，按原顺序重放到已包含它们的树上结果不变。
+ */
+@Slf4j
+public final class WriteAheadLog implements Closeable {
+
+    private static final int MAGIC = 0x5754574C; // "WTWL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    /** 单条记录的最大长度，超过即视为文件损坏 */
+    private static final int MAX_RECORD_SIZE = 1 << 24;
+
+    private final Path file;
+    /** 日志文件，压缩时替换为新文件；打开后只在持有 flushLock 时使用 */
+    private FileChannel channel;
+    /** 打开时从文件中读出的记录 */
+    private final List<Change> recovered;
+    /** 已追加、尚未写入文件的记录，由 this 保护 */
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private int pendingCount;
+    /** pending 中的记录落盘后完成，由 this 保护 */
+    private CompletableFuture<Void> group = new CompletableFuture<>();
+    /** 已停止接受追加，由 this 保护 */
+    private boolean closing;
+    /** 写文件和 fsync 只在持有 flushLock 时进行，期间不持有 this，追加不会等待磁盘 */
+    private final Object flushLock = new Object();
+    /** 已写入文件的字节数 */
+    private volatile long size;
+    /** 已追加的记录在文件中的结束位置，包括尚未写入的部分，由 this 保护 */
+    private long end;
+
+    private WriteAheadLog(Path file, FileChannel channel) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.recovered = recover();
+    }
+
+    /**
+     * 打开预写日志，文件不存在时创建
+     * @param file 日志文件路径
+     * @return 预写日志，{@link #recovered()} 为文件中已有的记录
+     * @throws IOException 读取失败或文件不是预写日志
+     */
+    public static WriteAheadLog open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new WriteAheadLog(file, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 读出全部完整的记录，截掉写到一半的尾部，并将写入位置移到文件末尾
+     */
+    private List<Change> recover() throws IOException {
+        long length = channel.size();
+        if (length < HEADER_SIZE) {
+            // 新文件，或创建时文件头没有写完
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+            ((Buffer) header).flip();
+            writeFully(header);
+            channel.force(true);
+            size = HEADER_SIZE;
+            end = size;
+            return Collections.emptyList();
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(header, 0);
+        ((Buffer) header).flip();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException("预写日志格式或版本不匹配: " + file);
+        }
+
+        List<Change> changes = new ArrayList<>();
+        long position = HEADER_SIZE;
+        ByteBuffer head = ByteBuffer.allocate(8);
+        CRC32 crc = new CRC32();
+        while (length - position >= 8) {
+            ((Buffer) head).clear();
+            readFully(head, position);
+            ((Buffer) head).flip();
+            int recordSize = head.getInt();
+            long checksum = head.getInt() & 0xFFFFFFFFL;
+            if (recordSize <= 0 || recordSize > MAX_RECORD_SIZE || length - position - 8 < recordSize) {
+                break;
+            }
+            byte[] payload = new byte[recordSize];
+            readFully(ByteBuffer.wrap(payload), position + 8);
+            crc.reset();
+            crc.update(payload, 0, payload.length);
+            if (crc.getValue() != checksum) {
+                break;
+            }
+            try {
+                changes.add(Change.decode(payload));
+            } catch (IOException e) {
+                break;
+            }
+            position += 8 + recordSize;
+        }
+        if (position < length) {
+            log.warn("预写日志 {} 在 {} 字节处的记录不完整或已损坏，截掉其后的 {} 字节", file, position, length - position);
+            channel.truncate(position);
+            channel.force(true);
+        }
+        channel.position(position);
+        size = position;
+        end = size;
+        if (!changes.isEmpty()) {
+            log.info("已从预写日志 {} 读出 {} 条修改", file, changes.size());
+        }
+        return changes;
+    }
+
+    /**
+     * 打开时从文件中读出的记录，按写入顺序排列
+     * @return 已有的修改
+     */
+    public List<Change> recovered() {
+        return recovered;
+    }
+
+    /**
+     * 追加一条记录。只写入内存缓冲，由刷盘线程的下一次 {@link #flush()} 写入磁盘
+     * @param change 修改
+     * @return 记录落盘后完成的 future，写入失败时以异常结束
+     */
+    public CompletableFuture<Void> append(Change change) {
+        byte[] payload = change.encode();
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        synchronized (this) {
+            if (closing) {
+                CompletableFuture<Void> rejected = new CompletableFuture<>();
+                rejected.completeExceptionally(new IllegalStateException("预写日志已关闭"));
+                return rejected;
+            }
+            writeInt(pending, payload.length);
+            writeInt(pending, (int) crc.getValue());
+            pending.write(payload, 0, payload.length);
+            pendingCount++;
+            end += 8 + payload.length;
+            notifyAll();
+            return group;
+        }
+    }
+
+    /**
+     * 刷盘线程等待下一组记录
+     * @return 有待写入的记录时返回 true；已停止接受追加且没有剩余记录时返回 false
+     * @throws InterruptedException 等待时被中断
+     */
+    public synchronized boolean awaitPending() throws InterruptedException {
+        while (pendingCount == 0 && !closing) {
+            wait();
+        }
+        return pendingCount > 0;
+    }
+
+    /**
+     * 组提交：把缓冲中的全部记录一次写入文件并 fsync，然后通知等待这一组的调用方。
+     * 写入失败时截掉写了一半的部分，这一组的调用方收到异常
+     * @return 本次写入的记录数
+     * @throws IOException 写入失败
+     */
+    public int flush() throws IOException {
+        synchronized (flushLock) {
+            return flushLocked();
+        }
+    }
+
+    /**
+     * 同 {@link #flush()}，调用方持有 flushLock
+     */
+    private int flushLocked() throws IOException {
+        byte[] batch;
+        int count;
+        CompletableFuture<Void> done;
+        synchronized (this) {
+            if (pendingCount == 0) {
+                return 0;
+            }
+            batch = pending.toByteArray();
+            count = pendingCount;
+            done = group;
+            pending = new ByteArrayOutputStream(Math.max(32, batch.length));
+            pendingCount = 0;
+            group = new CompletableFuture<>();
+        }
+        try {
+            writeFully(ByteBuffer.wrap(batch));
+            channel.force(false);
+        } catch (IOException e) {
+            try {
+                // 截掉写到一半的部分，之后的记录从原来的末尾写起
+                channel.truncate(size);
+            } catch (IOException ignored) {
+                // 截断也失败时留给下次打开时按不完整的尾部处理
+            }
+            done.completeExceptionally(e);
+            throw e;
+        }
+        size += batch.length;
+        done.complete(null);
+        return count;
+    }
+
+    /**
+     * 已追加的全部记录在文件中的结束位置，包括尚未写入的部分。
+     * 与单词树的副本在同一次加锁中取得，作为 {@link #compact(long)} 的参数
+     * @return 结束位置
+     */
+    public synchronized long position() {
+        return end;
+    }
+
+    /**
+     * 压缩日志：单词树已保存为快照，快照包含 mark 之前的全部记录。
+     * 先写入缓冲中的记录，再把 mark 之后的记录复制到新文件并原子替换原文件，期间暂停刷盘
+     * @param mark 生成快照所用副本时的 {@link #position()}
+     * @throws IOException 写入失败，原文件保持不变
+     */
+    public void compact(long mark) throws IOException {
+        synchronized (flushLock) {
+            flushLocked();
+            long tail = size - mark;
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            FileChannel next = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+                ((Buffer) header).flip();
+                while (header.hasRemaining()) {
+                    next.write(header);
+                }
+                for (long copied = 0; copied < tail; ) {
+                    copied += channel.transferTo(mark + copied, tail - copied, next);
+                }
+                next.force(true);
+                // 替换后 next 即指向日志文件
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException | RuntimeException e) {
+                next.close();
+                throw e;
+            }
+            FileChannel previous = channel;
+            channel = next;
+            size = HEADER_SIZE + tail;
+            synchronized (this) {
+                end -= mark - HEADER_SIZE;
+            }
+            try {
+                previous.close();
+            } catch (IOException e) {
+                log.warn("关闭压缩前的预写日志失败", e);
+            }
+            log.info("预写日志已压缩，保留 {} 字节", tail);
+        }
+    }
+
+    /**
+     * 已写入文件的字节数，包括文件头
+     * @return 文件大小
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * 停止接受追加，唤醒刷盘线程；刷盘线程写完剩余的记录后从 {@link #awaitPending()} 返回 false
+     */
+    public synchronized void shutdown() {
+        closing = true;
+        notifyAll();
+    }
+
+    /**
+     * 停止接受追加，写入缓冲中剩余的记录后关闭文件
+     */
+    @Override
+    public void close() throws IOException {
+        shutdown();
+        synchronized (flushLock) {
+            try {
+                flushLocked();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    private void writeFully(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+
+    private void readFully(ByteBuffer target, long position) throws IOException {
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position()) < 0) {
+                throw new IOException("预写日志不完整: " + file);
+            }
+        }
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    /**
+     * 一次实时修改：插入、删除或修改（含改名）一个单词
+     */
+    public static final class Change {
+
+        enum Type { INSERT, DELETE, UPDATE }
+
+        final Type type;
+        final String word;
+        /** 改名后的单词，不改名时为 null */
+        final String newWord;
+        final String translation;
+        final String ushone;
+        final String ukphone;
+
+        private Change(Type type, String word, String newWord, String translation, String ushone, String ukphone) {
+            this.type = type;
+            this.word = word;
+            this.newWord = newWord;
+            this.translation = translation;
+            this.ushone = ushone;
+            this.ukphone = ukphone;
+        }
+
+        public static Change insert(String word, String translation, String ushone, String ukphone) {
+            return new Change(Type.INSERT, word, null, translation, ushone, ukphone);
+        }
+
+        public static Change delete(String word) {
+            return new Change(Type.DELETE, word, null, null, null, null);
+        }
+
+        /**
+         * 修改单词，参数含义同 {@link WordService#updateWord}
+         */
+        public static Change update(String word, String newWord, String translation, String ushone, String ukphone) {
+            return new Change(Type.UPDATE, word, newWord == null || newWord.equals(word) ? null : newWord,
+                    translation, ushone, ukphone);
+        }
+
+        /**
+         * 在单词树上执行这次修改
+         * @param tree 单词树
+         * @return 是否修改成功：插入时单词已存在、删除或修改时单词不存在返回 false
+         * @throws IllegalStateException 改名的目标单词已经存在
+         */
+        public boolean apply(WordTree tree) {
+            switch (type) {
+                case INSERT:
+                    if (tree.findNode(word) != null) {
+                        return false;
+                    }
+                    tree.insert(word, translation, ushone, ukphone);
+                    return true;
+                case DELETE:
+                    return tree.delete(word);
+                default:
+                    return newWord == null
+                            ? tree.update(word, translation, ushone, ukphone)
+                            : tree.rename(word, newWord, translation, ushone, ukphone);
+            }
+        }
+
+        /**
+         * 重放这次修改：与 apply 不同，按 upsert 处理，修改发生时的结果总是覆盖树中已有的版本。
+         * 插入的单词已存在时换成插入时的内容；改名的目标单词已存在时用改名的结果替换它。
+         * 用于在词典或快照之上重放实时修改，例如修改之后同名单词才从词典中加载进来
+         * @param tree 单词树
+         * @return 是否修改了单词树：删除、修改或改名时单词不存在返回 false
+         */
+        public boolean replay(WordTree tree) {
+            switch (type) {
+                case INSERT:
+                    put(tree, word, translation, ushone, ukphone);
+                    return true;
+                case UPDATE:
+                    TrieNode node = tree.findNode(word);
+                    if (newWord == null || node == null || tree.findNode(newWord) == null) {
+                        return apply(tree);
+                    }
+                    tree.delete(word);
+                    put(tree, newWord,
+                            translation != null ? translation : node.translation,
+                            ushone != null ? ushone : node.ushone,
+                            ukphone != null ? ukphone : node.ukphone);
+                    return true;
+                default:
+                    return apply(tree);
+            }
+        }
+
+        /**
+         * 插入单词，已存在时先删除，未给出的翻译和发音也不沿用旧值
+         */
+        private static void put(WordTree tree, String word, String translation, String ushone, String ukphone) {
+            tree.delete(word);
+            tree.insert(word, translation, ushone, ukphone);
+        }
+
+        byte[] encode() {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeByte(type.ordinal());
+                writeString(out, word);
+                writeString(out, newWord);
+                writeString(out, translation);
+                writeString(out, ushone);
+                writeString(out, ukphone);
+            } catch (IOException e) {
+                // 写入内存不会失败
+                throw new IllegalStateException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        static Change decode(byte[] payload) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            int type = in.readUnsignedByte();
+            if (type >= Type.values().length) {
+                throw new IOException("未知的操作类型: " + type);
+            }
+            Change change = new Change(Type.values()[type], readString(in), readString(in),
+                    readString(in), readString(in), readString(in));
+            if (change.word == null || in.available() != 0) {
+                throw new IOException("记录格式错误");
+            }
+            return change;
+        }
+
+        /**
+         * 写入 UTF-8 字符串，长度 -1 表示 null
+         */
+        private static void writeString(DataOutputStream out, String value) throws IOException {
+            if (value == null) {
+                out.writeInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private static String readString(DataInputStream in) throws IOException {
+            int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            if (length > in.available()) {
+                throw new IOException("记录格式错误");
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.slixils.v2;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 按层数展开时，ref 只能指向已展开的节点
+ */
+class TrieNodeJsonTest {
+
+    /**
+     * 菱形：b 的子节点为 ab、abc、bc，ab 和 bc 的子节点都有 abc，abc 的子节点为 abcd。
+     * 完整模式下 abc 先在第 2 层（ab 之下）出现，再在第 1 层出现
+     */
+    private static WordTree diamond(boolean transitiveReduction) {
+        WordTree tree = new WordTree(transitiveReduction);
+        for (String word : new String[]{"b", "ab", "bc", "abc", "abcd"}) {
+            tree.insert(word, "释义" + word, null, null);
+        }
+        return tree;
+    }
+
+    @Test
+    void nodeTruncatedDeeperIsExpandedAtShallowerLevel() throws IOException {
+        TrieNode b = diamond(false).findNode("b");
+        JsonNode root = JsonSupport.MAPPER.readTree(b.toJsonString(false, true, 2));
+        JsonNode abc = null;
+        for (JsonNode child : root.get("children")) {
+            if ("abc".equals(child.path("word").asText())) {
+                abc = child;
+            }
+        }
+        assertNotNull(abc, "第 1 层的 abc 应当完整输出而不是 ref");
+        assertTrue(abc.has("children"));
+        assertFalse(abc.has("childCount"));
+        assertEquals(1, abc.get("children").size());
+    }
+
+    @Test
+    void everyRefPointsToAnExpandedNode() throws IOException {
+        for (boolean reduced : new boolean[]{false, true}) {
+            WordTree tree = diamond(reduced);
+            for (String word : new String[]{"b", "abc", "abcd"}) {
+                for (int depth = 1; depth <= 3; depth++) {
+                    String json = tree.findNode(word).toJsonString(true, true, depth);
+                    Map<Integer, JsonNode> expanded = new HashMap<>();
+                    collect(JsonSupport.MAPPER.readTree(json), expanded);
+                    assertRefsResolve(JsonSupport.MAPPER.readTree(json), expanded, json);
+                }
+            }
+        }
+    }
+
+    /**
+     * 收集输出了 children 或 parents（而不是只有计数）的节点
+     */
+    private static void collect(JsonNode node, Map<Integer, JsonNode> expanded) {
+        if (node.has("id") && !node.has("childCount") && !node.has("parentCount")) {
+            expanded.put(node.get("id").asInt(), node);
+        }
+        for (String field : new String[]{"children", "parents"}) {
+            for (JsonNode next : node.path(field)) {
+                collect(next, expanded);
+            }
+        }
+    }
+
+    private static void assertRefsResolve(JsonNode node, Map<Integer, JsonNode> expanded, String json) {
+        if (node.has("ref")) {
+            assertTrue(expanded.containsKey(node.get("ref").asInt()), "ref 指向未展开的节点: " + json);
+            return;
+        }
+        assertFalse(node.has("childCount") && node.has("children"));
+        for (String field : new String[]{"children", "parents"}) {
+            for (JsonNode next : node.path(field)) {
+                assertRefsResolve(next, expanded, json);
+            }
+        }
+    }
+}
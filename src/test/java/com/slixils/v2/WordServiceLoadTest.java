@@ -0,0 +1,89 @@
+package com.slixils.v2;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * 词典中有格式错误的条目时加载应当失败，而不是一直停在加载中
+ */
+class WordServiceLoadTest {
+
+    @TempDir
+    Path dir;
+
+    private WordService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void readerRejectsMalformedEntries() throws IOException {
+        for (String entry : new String[]{"{\"name\":{\"x\":1}}", "\"oops\""}) {
+            Path file = dictionary(1, entry);
+            try (DictionaryReader reader = new DictionaryReader(file)) {
+                reader.next();
+                assertThrows(IOException.class, reader::next);
+            }
+        }
+    }
+
+    @Test
+    void malformedEntryFailsSynchronousLoad() throws IOException {
+        assertLoadFails(dictionary(10, "{\"name\":{\"x\":1}}"));
+    }
+
+    @Test
+    void malformedEntryFailsAsynchronousLoad() throws IOException {
+        // 同步阶段只加载约前 1/4，错误条目放在后面由异步加载读到
+        assertLoadFails(dictionary(40000, "\"oops\""));
+    }
+
+    private void assertLoadFails(Path file) {
+        service = new WordService();
+        ReflectionTestUtils.setField(service, "backend", "tree");
+        ReflectionTestUtils.setField(service, "dictionaryPath", file.toString());
+        ReflectionTestUtils.setField(service, "imagePath", "");
+        ReflectionTestUtils.setField(service, "snapshotPath", "");
+        ReflectionTestUtils.setField(service, "frequencyPath", "");
+        ReflectionTestUtils.setField(service, "walPath", "");
+        ReflectionTestUtils.setField(service, "frequencyLearn", false);
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            service.initialize();
+            while (service.getLoadProgress().getState() == LoadProgress.State.PENDING
+                    || service.getLoadProgress().getState() == LoadProgress.State.LOADING) {
+                Thread.sleep(10);
+            }
+        });
+        assertEquals(LoadProgress.State.FAILED, service.getLoadProgress().getState());
+    }
+
+    /**
+     * 生成 count 个正常条目，最后跟一个给定的条目
+     */
+    private Path dictionary(int count, String last) throws IOException {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            sb.append("{\"name\":\"w").append(i).append("\",\"trans\":[\"t").append(i).append("\"]},");
+        }
+        sb.append(last).append(']');
+        Path file = Files.createTempFile(dir, "dict", ".json");
+        Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}